@@ -0,0 +1,255 @@
+/*
+ * Entry points for the JMH benchmarks in bench/benchmarks.
+ *
+ * JMH does not accept benchmark classes in the unnamed package, and classes
+ * in a named package cannot refer to classes in the unnamed one. So the
+ * benchmarks look up the methods of this class once (see
+ * benchmarks.Labyrinths) and only pass labyrinths, grids and solvers around
+ * as Object.
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public final class BenchmarkSupport {
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * @return A new Labyrinth laid out like in Labyrinth.makeAndSaveLabyrinth()
+	 *         (start in the centre, end in a corner), which only depends on
+	 *         the arguments. It is generated sequentially if threads is 1,
+	 *         else in parallel on that many threads.
+	 */
+	public static Object generate(int width, int height, double cycleCreationProbability, long seed, int threads) {
+		Random random = new Random(seed);
+		Point start = new Point(width / 2, height / 2);
+		int zeroToThree = random.nextInt(4);
+		Point end = new Point(zeroToThree / 2 == 0 ? 0 : width - 1, zeroToThree % 2 == 0 ? 0 : height - 1);
+		Labyrinth.Grid grid = new Labyrinth.Grid(width, height, start, end);
+		LabyrinthGenerator generator = new LabyrinthGenerator(random.nextLong(), cycleCreationProbability);
+		if (threads == 1)
+			generator.generate(grid);
+		else
+			generator.generateParallel(grid, threads);
+		return new Labyrinth(grid);
+	}
+
+	// A labyrinth on the grid of the given one, with its visited state in
+	// tiles if tiledVisited (see TiledCells)
+	public static Object withVisitedLayout(Object labyrinth, boolean tiledVisited) {
+		return new Labyrinth(((Labyrinth) labyrinth).grid, tiledVisited);
+	}
+
+	/*
+	 * Visited bits of a grid of the given size, without the grid, laid out by
+	 * cell index like in a Labyrinth, or in tiles.
+	 */
+	private static final class VisitedCells {
+		final int width;
+		final ConcurrentBitSet bits;
+		final TiledCells tiles; // null if by index
+
+		VisitedCells(int width, int height, boolean tiled) {
+			this.width = width;
+			this.tiles = tiled ? new TiledCells(width, height) : null;
+			this.bits = new ConcurrentBitSet(tiled ? tiles.size() : width * height);
+		}
+
+		int slot(int cell) {
+			return tiles == null ? cell : tiles.position(cell);
+		}
+	}
+
+	public static Object newVisitedCells(int width, int height, boolean tiled) {
+		return new VisitedCells(width, height, tiled);
+	}
+
+	/**
+	 * Visits all cells of the given region like a solver does (see
+	 * Labyrinth.tryVisit()), then clears them again.
+	 * 
+	 * @return The number of cells visited
+	 */
+	public static int visitRegion(Object visitedCells, int x0, int y0, int width, int height) {
+		VisitedCells cells = (VisitedCells) visitedCells;
+		int visited = 0;
+		for (int y = y0; y < y0 + height; ++y)
+			for (int x = x0; x < x0 + width; ++x)
+				if (cells.bits.trySet(cells.slot(y * cells.width + x)))
+					++visited;
+		for (int y = y0; y < y0 + height; ++y)
+			for (int x = x0; x < x0 + width; ++x)
+				cells.bits.clear(cells.slot(y * cells.width + x));
+		return visited;
+	}
+
+	public static Object grid(Object labyrinth) {
+		return ((Labyrinth) labyrinth).grid;
+	}
+
+	public static Object copyGrid(Object grid) {
+		return ((Labyrinth.Grid) grid).copy();
+	}
+
+	// Fills the dead ends of grid in place, see DeadEndFiller
+	public static long fillDeadEnds(Object grid, int threads) {
+		return new DeadEndFiller(threads).fill((Labyrinth.Grid) grid);
+	}
+
+	/**
+	 * @return A solver of the given class with the given number of threads,
+	 *         opened like in Labyrinth.main() for any number of solves
+	 */
+	public static Object prepareSolver(String solverName, int threads) {
+		LabyrinthSolver solver = newSolver(solverName, threads);
+		if (solver instanceof SolverEngine)
+			((SolverEngine) solver).open();
+		return solver;
+	}
+
+	private static LabyrinthSolver newSolver(String solverName, int threads) {
+		switch (solverName) {
+		case "NonParallelSolver":
+			return new NonParallelSolver();
+		case "ParallelSolver":
+			return new ParallelSolver(threads);
+		case "LimitedParallelSolver":
+			return new LimitedParallelSolver(threads);
+		case "MultithreadBasedSolver":
+			return new MultithreadBasedSolver(threads);
+		case "BidirectionalSolver":
+			return new BidirectionalSolver();
+		case "ParallelBFSSolver":
+			return new ParallelBFSSolver(threads);
+		case "JunctionGraphSolver":
+			return new JunctionGraphSolver();
+		case "AdaptiveParallelSolver":
+			return new AdaptiveParallelSolver(threads, AdaptiveParallelSolver.Config.DEFAULT);
+		case "TileOwnershipSolver":
+			return new TileOwnershipSolver(threads);
+		case "StreamingSolver":
+			return new StreamingSolver();
+		default:
+			throw new IllegalArgumentException("Unknown solver " + solverName);
+		}
+	}
+
+	public static Object newQuerySolver() {
+		return new QuerySolver();
+	}
+
+	public static Object query(Object querySolver, Object grid, int fromX, int fromY, int toX, int toY) {
+		return ((QuerySolver) querySolver).solve((Labyrinth.Grid) grid, new Point(fromX, fromY), new Point(toX, toY));
+	}
+
+	/**
+	 * @return A ConcurrentQuerySolver on virtual threads if engine is
+	 *         "virtual", or on the given number of platform threads if it is
+	 *         "platform", else SolverQueries with the solver of that name
+	 *         (see newSolver()) on that many threads
+	 */
+	public static Object newConcurrentQuerySolver(String engine, int threads) {
+		switch (engine) {
+		case "virtual":
+			return ConcurrentQuerySolver.virtualThreads();
+		case "platform":
+			return ConcurrentQuerySolver.platformThreads(threads);
+		default:
+			return new SolverQueries((LabyrinthSolver) prepareSolver(engine, threads));
+		}
+	}
+
+	/*
+	 * Answers queries with a LabyrinthSolver, to compare the solvers with
+	 * ConcurrentQuerySolver under the same load: Each query is a Labyrinth of
+	 * its own on the passages of the grid, with the query's start and end (and
+	 * visited state for all cells, like any Labyrinth). A solver solves one
+	 * labyrinth at a time, so the queries queue for one thread, which has them
+	 * solved one after another, each by all threads of the solver.
+	 */
+	private static final class SolverQueries {
+		final LabyrinthSolver solver;
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		SolverQueries(LabyrinthSolver solver) {
+			this.solver = solver;
+		}
+
+		CompletableFuture<Point[]> solve(Labyrinth.Grid grid, Point from, Point to) {
+			final Labyrinth.Grid query = new Labyrinth.Grid(grid.width, grid.height, from, to, grid.passages);
+			return CompletableFuture.supplyAsync(new Supplier<Point[]>() {
+				@Override
+				public Point[] get() {
+					return new Labyrinth(query).solve(solver);
+				}
+			}, executor);
+		}
+
+		// Waits for the queries started to finish, then frees the solver's threads
+		void close() {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			dispose(solver);
+		}
+	}
+
+	// Starts a query, returning its CompletableFuture
+	public static Object startQuery(Object concurrentQuerySolver, Object grid, int fromX, int fromY, int toX, int toY) {
+		Point from = new Point(fromX, fromY);
+		Point to = new Point(toX, toY);
+		if (concurrentQuerySolver instanceof SolverQueries)
+			return ((SolverQueries) concurrentQuerySolver).solve((Labyrinth.Grid) grid, from, to);
+		return ((ConcurrentQuerySolver) concurrentQuerySolver).solve((Labyrinth.Grid) grid, from, to);
+	}
+
+	public static Object buildTreeIndex(Object grid, int threads) {
+		return TreeIndex.build((Labyrinth.Grid) grid, threads);
+	}
+
+	public static Object treePath(Object treeIndex, int fromX, int fromY, int toX, int toY) {
+		return ((TreeIndex) treeIndex).path(new Point(fromX, fromY), new Point(toX, toY));
+	}
+
+	public static Object solve(Object labyrinth, Object solver) {
+		return ((Labyrinth) labyrinth).solve((LabyrinthSolver) solver);
+	}
+
+	// Frees threads held by a solver from prepareSolver() after its last solve(),
+	// or by a solver from newConcurrentQuerySolver()
+	public static void dispose(Object solver) {
+		if (solver instanceof SolverEngine)
+			((SolverEngine) solver).close();
+		else if (solver instanceof ConcurrentQuerySolver)
+			((ConcurrentQuerySolver) solver).close();
+		else if (solver instanceof SolverQueries)
+			((SolverQueries) solver).close();
+	}
+
+	public static void saveGrid(Object grid, String fileName) throws IOException {
+		Labyrinth.saveGrid((Labyrinth.Grid) grid, fileName);
+	}
+
+	public static Object loadGrid(String fileName) throws IOException, ClassNotFoundException {
+		return Labyrinth.loadGrid(fileName);
+	}
+
+	public static void writeGridFile(Object grid, String fileName) throws IOException {
+		GridFile.write((Labyrinth.Grid) grid, Paths.get(fileName));
+	}
+
+	public static Object mapGridFile(String fileName) throws IOException {
+		return GridFile.map(Paths.get(fileName));
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Throughput of point-to-point queries on a small labyrinth under concurrent
+ * load: Every invocation starts QUERIES queries between random cells at once
+ * and waits for all of them. The engine answers them either with a
+ * ConcurrentQuerySolver on a pool of platform threads ("platform") or with
+ * one virtual thread per query ("virtual"), or, as the baseline, with one of
+ * the existing solvers (e.g. "MultithreadBasedSolver"), which solve one
+ * labyrinth per query, one query after another (see
+ * BenchmarkSupport.SolverQueries). Virtual threads need the benchmarks to run
+ * on Java 21 or later, so they are only measured on request, e.g. with
+ * -p engine=virtual,platform.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConcurrentQueryBenchmark {
+
+	private static final int QUERIES = 1000;
+
+	@Param({ "platform", "MultithreadBasedSolver", "AdaptiveParallelSolver" })
+	public String engine;
+
+	// All but for virtual threads
+	@Param({ "4" })
+	public int threads;
+
+	@Param({ "100" })
+	public int size;
+
+	@Param({ "0.0", "0.01" })
+	public double cycleProbability;
+
+	@Param({ "42" })
+	public long seed;
+
+	private Object grid;
+	private Object querySolver;
+	private final SplittableRandom random = new SplittableRandom();
+	private final CompletableFuture<?>[] queries = new CompletableFuture<?>[QUERIES];
+
+	@Setup(Level.Trial)
+	public void setup() {
+		grid = Labyrinths.grid(Labyrinths.generate(size, size, cycleProbability, seed, 1));
+		querySolver = Labyrinths.newConcurrentQuerySolver(engine, threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Labyrinths.dispose(querySolver);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public Object queries() {
+		for (int i = 0; i < QUERIES; ++i)
+			queries[i] = (CompletableFuture<?>) Labyrinths.startQuery(querySolver, grid, random.nextInt(size),
+					random.nextInt(size), random.nextInt(size), random.nextInt(size));
+		return CompletableFuture.allOf(queries).join();
+	}
+}
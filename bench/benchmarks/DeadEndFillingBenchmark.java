@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time to fill all dead ends of a labyrinth (see DeadEndFiller) on the given
+ * number of threads. Each invocation fills a fresh copy of the same grid; the
+ * copy is not measured. Returns the number of cells sealed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DeadEndFillingBenchmark {
+
+	@Param({ "1000", "5000" })
+	public int size;
+
+	@Param({ "0.0", "0.01" })
+	public double cycleProbability;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	@Param({ "42" })
+	public long seed;
+
+	private Object grid;
+	private Object copy;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		grid = Labyrinths.grid(Labyrinths.generate(size, size, cycleProbability, seed, 1));
+	}
+
+	@Setup(Level.Invocation)
+	public void copyGrid() {
+		copy = Labyrinths.copyGrid(grid);
+	}
+
+	@Benchmark
+	public long fill() {
+		return Labyrinths.fillDeadEnds(copy, threads);
+	}
+}
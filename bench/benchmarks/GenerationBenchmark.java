@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time to generate a new labyrinth, sequentially (threads = 1) or in
+ * parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GenerationBenchmark {
+
+	@Param({ "1000", "5000" })
+	public int size;
+
+	@Param({ "0.0", "0.01" })
+	public double cycleProbability;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	@Param({ "42" })
+	public long seed;
+
+	@Benchmark
+	public Object generate() {
+		return Labyrinths.generate(size, size, cycleProbability, seed, threads);
+	}
+}
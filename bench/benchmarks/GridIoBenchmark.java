@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time to save a grid to and load it from a file: in the binary format of
+ * GridFile (where loading only maps the file) and in the legacy .ser format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GridIoBenchmark {
+
+	@Param({ "1000", "5000" })
+	public int size;
+
+	@Param({ "42" })
+	public long seed;
+
+	private Object grid;
+	private File serFile;
+	private File gridFile;
+
+	@Setup(Level.Trial)
+	public void createFiles() throws IOException {
+		grid = Labyrinths.grid(Labyrinths.generate(size, size, 0.01, seed, 1));
+		serFile = File.createTempFile("grid", ".ser");
+		Labyrinths.saveGrid(grid, serFile.getPath());
+		gridFile = File.createTempFile("grid", ".lab");
+		Labyrinths.writeGridFile(grid, gridFile.getPath());
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		serFile.delete();
+		gridFile.delete();
+	}
+
+	@Benchmark
+	public void save() {
+		Labyrinths.saveGrid(grid, serFile.getPath());
+	}
+
+	@Benchmark
+	public Object load() {
+		return Labyrinths.loadGrid(serFile.getPath());
+	}
+
+	@Benchmark
+	public void write() {
+		Labyrinths.writeGridFile(grid, gridFile.getPath());
+	}
+
+	@Benchmark
+	public Object map() {
+		return Labyrinths.mapGridFile(gridFile.getPath());
+	}
+}
@@ -0,0 +1,228 @@
+package benchmarks;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/*
+ * Access to the labyrinth classes, which live in the unnamed package and
+ * therefore cannot be imported here: calls the static methods of
+ * BenchmarkSupport through method handles resolved once at class
+ * initialization, so the measured code pays no reflection cost.
+ */
+final class Labyrinths {
+
+	private static final MethodHandle GENERATE = find("generate",
+			methodType(Object.class, int.class, int.class, double.class, long.class, int.class));
+	private static final MethodHandle WITH_VISITED_LAYOUT = find("withVisitedLayout",
+			methodType(Object.class, Object.class, boolean.class));
+	private static final MethodHandle NEW_VISITED_CELLS = find("newVisitedCells",
+			methodType(Object.class, int.class, int.class, boolean.class));
+	private static final MethodHandle VISIT_REGION = find("visitRegion",
+			methodType(int.class, Object.class, int.class, int.class, int.class, int.class));
+	private static final MethodHandle GRID = find("grid", methodType(Object.class, Object.class));
+	private static final MethodHandle COPY_GRID = find("copyGrid", methodType(Object.class, Object.class));
+	private static final MethodHandle FILL_DEAD_ENDS = find("fillDeadEnds",
+			methodType(long.class, Object.class, int.class));
+	private static final MethodHandle PREPARE_SOLVER = find("prepareSolver",
+			methodType(Object.class, String.class, int.class));
+	private static final MethodHandle NEW_QUERY_SOLVER = find("newQuerySolver", methodType(Object.class));
+	private static final MethodHandle QUERY = find("query",
+			methodType(Object.class, Object.class, Object.class, int.class, int.class, int.class, int.class));
+	private static final MethodHandle NEW_CONCURRENT_QUERY_SOLVER = find("newConcurrentQuerySolver",
+			methodType(Object.class, String.class, int.class));
+	private static final MethodHandle START_QUERY = find("startQuery",
+			methodType(Object.class, Object.class, Object.class, int.class, int.class, int.class, int.class));
+	private static final MethodHandle BUILD_TREE_INDEX = find("buildTreeIndex",
+			methodType(Object.class, Object.class, int.class));
+	private static final MethodHandle TREE_PATH = find("treePath",
+			methodType(Object.class, Object.class, int.class, int.class, int.class, int.class));
+	private static final MethodHandle SOLVE = find("solve", methodType(Object.class, Object.class, Object.class));
+	private static final MethodHandle DISPOSE = find("dispose", methodType(void.class, Object.class));
+	private static final MethodHandle SAVE_GRID = find("saveGrid", methodType(void.class, Object.class, String.class));
+	private static final MethodHandle LOAD_GRID = find("loadGrid", methodType(Object.class, String.class));
+	private static final MethodHandle WRITE_GRID_FILE = find("writeGridFile",
+			methodType(void.class, Object.class, String.class));
+	private static final MethodHandle MAP_GRID_FILE = find("mapGridFile", methodType(Object.class, String.class));
+
+	private Labyrinths() {
+	}
+
+	private static MethodHandle find(String name, MethodType type) {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName("BenchmarkSupport"), name, type);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	static Object generate(int width, int height, double cycleCreationProbability, long seed, int threads) {
+		try {
+			return (Object) GENERATE.invokeExact(width, height, cycleCreationProbability, seed, threads);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object withVisitedLayout(Object labyrinth, boolean tiledVisited) {
+		try {
+			return (Object) WITH_VISITED_LAYOUT.invokeExact(labyrinth, tiledVisited);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object newVisitedCells(int width, int height, boolean tiled) {
+		try {
+			return (Object) NEW_VISITED_CELLS.invokeExact(width, height, tiled);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static int visitRegion(Object visitedCells, int x0, int y0, int width, int height) {
+		try {
+			return (int) VISIT_REGION.invokeExact(visitedCells, x0, y0, width, height);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object grid(Object labyrinth) {
+		try {
+			return (Object) GRID.invokeExact(labyrinth);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object copyGrid(Object grid) {
+		try {
+			return (Object) COPY_GRID.invokeExact(grid);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static long fillDeadEnds(Object grid, int threads) {
+		try {
+			return (long) FILL_DEAD_ENDS.invokeExact(grid, threads);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object prepareSolver(String solverName, int threads) {
+		try {
+			return (Object) PREPARE_SOLVER.invokeExact(solverName, threads);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object newQuerySolver() {
+		try {
+			return (Object) NEW_QUERY_SOLVER.invokeExact();
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object query(Object querySolver, Object grid, int fromX, int fromY, int toX, int toY) {
+		try {
+			return (Object) QUERY.invokeExact(querySolver, grid, fromX, fromY, toX, toY);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object newConcurrentQuerySolver(String engine, int threads) {
+		try {
+			return (Object) NEW_CONCURRENT_QUERY_SOLVER.invokeExact(engine, threads);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object startQuery(Object concurrentQuerySolver, Object grid, int fromX, int fromY, int toX, int toY) {
+		try {
+			return (Object) START_QUERY.invokeExact(concurrentQuerySolver, grid, fromX, fromY, toX, toY);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object buildTreeIndex(Object grid, int threads) {
+		try {
+			return (Object) BUILD_TREE_INDEX.invokeExact(grid, threads);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object treePath(Object treeIndex, int fromX, int fromY, int toX, int toY) {
+		try {
+			return (Object) TREE_PATH.invokeExact(treeIndex, fromX, fromY, toX, toY);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object solve(Object labyrinth, Object solver) {
+		try {
+			return (Object) SOLVE.invokeExact(labyrinth, solver);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static void dispose(Object solver) {
+		try {
+			DISPOSE.invokeExact(solver);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static void saveGrid(Object grid, String fileName) {
+		try {
+			SAVE_GRID.invokeExact(grid, fileName);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object loadGrid(String fileName) {
+		try {
+			return (Object) LOAD_GRID.invokeExact(fileName);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static void writeGridFile(Object grid, String fileName) {
+		try {
+			WRITE_GRID_FILE.invokeExact(grid, fileName);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	static Object mapGridFile(String fileName) {
+		try {
+			return (Object) MAP_GRID_FILE.invokeExact(fileName);
+		} catch (Throwable t) {
+			throw unchecked(t);
+		}
+	}
+
+	private static RuntimeException unchecked(Throwable t) {
+		if (t instanceof RuntimeException)
+			return (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		return new RuntimeException(t);
+	}
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Throughput of point-to-point queries between random cells, with all
+ * benchmark threads querying one shared grid, either by searching (see
+ * QuerySolver) or along a prebuilt spanning tree (see TreeIndex). The number
+ * of threads can be changed with -t.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class QueryBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class SharedGrid {
+
+		@Param({ "1000", "5000" })
+		public int size;
+
+		@Param({ "0.0", "0.01" })
+		public double cycleProbability;
+
+		@Param({ "42" })
+		public long seed;
+
+		Object grid;
+		Object querySolver;
+		Object treeIndex;
+
+		@Setup(Level.Trial)
+		public void generate() {
+			grid = Labyrinths.grid(Labyrinths.generate(size, size, cycleProbability, seed, 1));
+			querySolver = Labyrinths.newQuerySolver();
+			treeIndex = Labyrinths.buildTreeIndex(grid, Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Queries {
+		final SplittableRandom random = new SplittableRandom();
+	}
+
+	@Benchmark
+	public Object query(SharedGrid shared, Queries queries) {
+		SplittableRandom random = queries.random;
+		return Labyrinths.query(shared.querySolver, shared.grid, random.nextInt(shared.size),
+				random.nextInt(shared.size), random.nextInt(shared.size), random.nextInt(shared.size));
+	}
+
+	@Benchmark
+	public Object treeIndexQuery(SharedGrid shared, Queries queries) {
+		SplittableRandom random = queries.random;
+		return Labyrinths.treePath(shared.treeIndex, random.nextInt(shared.size), random.nextInt(shared.size),
+				random.nextInt(shared.size), random.nextInt(shared.size));
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Time of one Labyrinth.solve() per solver on a labyrinth that only depends on
+ * size, cycleProbability and seed. Each solver is set up (e.g. the threads of
+ * a SolverEngine started) once per trial and reused by all its invocations,
+ * like by the solves in Labyrinth.main(), so setup is not measured (nor is
+ * the graph of JunctionGraphSolver, which is built in the first invocation).
+ * Speedups are relative to NonParallelSolver, the sequential baseline, on the
+ * same parameters. Note that ParallelSolver forks recursively at every branch
+ * and overflows the stack on all but small labyrinths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SolverBenchmark {
+
+	@Param({ "NonParallelSolver", "ParallelSolver", "LimitedParallelSolver", "MultithreadBasedSolver",
+			"BidirectionalSolver", "ParallelBFSSolver", "JunctionGraphSolver", "AdaptiveParallelSolver",
+			"TileOwnershipSolver", "StreamingSolver" })
+	public String solver;
+
+	@Param({ "1000", "5000" })
+	public int size;
+
+	@Param({ "0.0", "0.01" })
+	public double cycleProbability;
+
+	// For scaling curves, e.g. -p solver=MultithreadBasedSolver -p threads=1,2,4,8,16,32,64
+	@Param({ "4" })
+	public int threads;
+
+	@Param({ "42" })
+	public long seed;
+
+	// Layout of the visited state, by cell index ("rows") or in tiles of cells
+	// ("tiles", see TiledCells), e.g. -p visitedLayout=rows,tiles -p threads=16
+	@Param({ "rows" })
+	public String visitedLayout;
+
+	private Object labyrinth;
+	private Object preparedSolver;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		labyrinth = Labyrinths.generate(size, size, cycleProbability, seed, 1);
+		if (visitedLayout.equals("tiles"))
+			labyrinth = Labyrinths.withVisitedLayout(labyrinth, true);
+	}
+
+	@Setup(Level.Trial)
+	public void prepareSolver() {
+		preparedSolver = Labyrinths.prepareSolver(solver, threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void disposeSolver() {
+		Labyrinths.dispose(preparedSolver);
+	}
+
+	@Benchmark
+	public Object solve() {
+		return Labyrinths.solve(labyrinth, preparedSolver);
+	}
+}
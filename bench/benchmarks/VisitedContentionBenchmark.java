@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * False sharing on the visited state: Each of the threads visits (and then
+ * clears) all cells of a REGION x REGION region of its own, with the regions
+ * side by side in one row, like threads searching neighboring parts of a
+ * labyrinth. No two threads visit the same cell, so any slowdown with more
+ * threads comes from cache lines shared between neighboring regions, which
+ * the tiled layout (see TiledCells) avoids. Compare with -t 1 for the time
+ * without contention; this needs as many cores as threads to show.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(VisitedContentionBenchmark.THREADS)
+public class VisitedContentionBenchmark {
+
+	static final int THREADS = 16;
+	private static final int REGION = 64;
+
+	@Param({ "rows", "tiles" })
+	public String visitedLayout;
+
+	private Object visitedCells;
+	private final AtomicInteger regions = new AtomicInteger();
+
+	// The region of one thread
+	@State(Scope.Thread)
+	public static class Region {
+		int x0;
+
+		@Setup(Level.Trial)
+		public void assign(VisitedContentionBenchmark benchmark) {
+			x0 = benchmark.regions.getAndIncrement() % THREADS * REGION;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		visitedCells = Labyrinths.newVisitedCells(THREADS * REGION, REGION, visitedLayout.equals("tiles"));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(REGION * REGION)
+	public int visitRegion(Region region) {
+		return Labyrinths.visitRegion(visitedCells, region.x0, 0, REGION, REGION);
+	}
+}
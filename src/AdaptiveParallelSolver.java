@@ -0,0 +1,257 @@
+/*
+ * A ForkJoin solver that adapts the number of tasks it forks: Each task runs
+ * a sequential depth-first search with an explicit backtrack stack, and only
+ * forks a spare branch into a new task while the pool is short of work (few
+ * tasks queued by the current worker beyond what idle workers are expected to
+ * steal, see ForkJoinTask.getSurplusQueuedTaskCount()) and the branch is
+ * estimated to be large enough to be worth a task. Both thresholds are set by
+ * a Config, so they can be tuned to the shape of the labyrinths solved.
+ * Paths are shared as in ParallelSolver (see Labyrinth.pathTo()). Unlike
+ * there, tasks never join the tasks they fork (which nests joins as deep as
+ * the chain of forks and overflows the stack), but are CountedCompleters:
+ * The search is done when all tasks have completed.
+ */
+
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveParallelSolver implements SolverEngine {
+
+	/*
+	 * When to fork a spare branch into a new task rather than keeping it for
+	 * backtracking.
+	 */
+	public static final class Config {
+
+		public static final Config DEFAULT = new Config(2, 256);
+
+		// Fork only while the current worker has at most this many queued
+		// tasks that are not expected to be stolen
+		public final int maxSurplusTasks;
+		// Fork only branches with at least this many cells, as estimated by
+		// a bounded search of the branch (0: fork without estimating)
+		public final int minSubtreeCells;
+
+		public Config(int maxSurplusTasks, int minSubtreeCells) {
+			this.maxSurplusTasks = maxSurplusTasks;
+			this.minSubtreeCells = minSubtreeCells;
+		}
+
+		@Override
+		public String toString() {
+			return "maxSurplusTasks=" + maxSurplusTasks + ", minSubtreeCells=" + minSubtreeCells;
+		}
+	}
+
+	private final int parallelism;
+	private final Config config;
+
+	private ForkJoinPool pool; // null unless open
+
+	private Labyrinth lab;
+	// Cancelled by the task that reaches end, so that all others stop
+	private CancellationToken cancellation;
+
+	public AdaptiveParallelSolver() {
+		this(Runtime.getRuntime().availableProcessors(), Config.DEFAULT);
+	}
+
+	public AdaptiveParallelSolver(int parallelism) {
+		this(parallelism, Config.DEFAULT);
+	}
+
+	public AdaptiveParallelSolver(int parallelism, Config config) {
+		this.parallelism = parallelism;
+		this.config = config;
+	}
+
+	@Override
+	public void open() {
+		if (this.pool == null) {
+			this.pool = new ForkJoinPool(this.parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				@Override
+				public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+					return new Worker(pool);
+				}
+			}, null, false);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			try {
+				this.pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.pool = null;
+		}
+	}
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		if (this.pool == null)
+			throw new IllegalStateException("AdaptiveParallelSolver is not open");
+		this.lab = lab;
+		this.cancellation = new CancellationToken();
+		Labyrinth.Grid grid = lab.grid;
+		long stealsBefore = this.pool.getStealCount();
+		this.pool.invoke(new SearchTask(null, grid.index(grid.start), null));
+		SolverStats.Counts counts = new SolverStats.Counts();
+		counts.steals = this.pool.getStealCount() - stealsBefore;
+		lab.stats.add(counts);
+		return this.cancellation.isCancelled() ? lab.pathTo(grid.index(grid.end)) : null;
+	}
+
+	/*
+	 * A pool thread, which keeps the stacks of the tasks it runs across tasks
+	 * and solves (a task runs to its end without running other tasks in
+	 * between, as it never joins).
+	 */
+	private static final class Worker extends ForkJoinWorkerThread {
+
+		final IntStack backtrackStack = new IntStack();
+		final IntStack estimateStack = new IntStack();
+
+		Worker(ForkJoinPool pool) {
+			super(pool);
+		}
+	}
+
+	private final class SearchTask extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int startPoint;
+		private final Direction cameFrom; // direction from startPoint back to the cell before it (null for start)
+
+		// Cells to walk before the next estimate of a branch: Each estimate costs
+		// as many steps as it counted, so this keeps estimating from taking
+		// more time than the search itself
+		private int stepsUntilEstimate;
+
+		SearchTask(SearchTask parent, int startPoint, Direction cameFrom) {
+			super(parent);
+			this.startPoint = startPoint;
+			this.cameFrom = cameFrom;
+		}
+
+		@Override
+		public void compute() {
+			Labyrinth.Grid grid = lab.grid;
+			int end = grid.index(grid.end);
+			// Pairs of (neighbor, ordinal of the direction back to the branching point)
+			IntStack backtrackStack;
+			IntStack estimateStack;
+			if (Thread.currentThread() instanceof Worker) {
+				backtrackStack = ((Worker) Thread.currentThread()).backtrackStack;
+				estimateStack = ((Worker) Thread.currentThread()).estimateStack;
+				backtrackStack.clear(); // left over if the task before was cancelled
+			} else {
+				// Run by the thread waiting in solve(), which may help with the search
+				backtrackStack = new IntStack();
+				estimateStack = new IntStack();
+			}
+			SolverStats.Counts counts = new SolverStats.Counts();
+			backtrackStack.push(this.startPoint);
+			backtrackStack.push(this.cameFrom == null ? -1 : this.cameFrom.ordinal());
+			// Check for cancellation on entry, then every CancellationToken.CHECK_INTERVAL cells
+			int stepsUntilCheck = 1;
+			search: while (!backtrackStack.isEmpty()) {
+				int directionBack = backtrackStack.pop();
+				int current = backtrackStack.pop();
+				Direction from = directionBack == -1 ? null : Direction.VALUES[directionBack];
+				// Walk on as long as there is an unvisited neighbor
+				while (true) {
+					if (!lab.tryVisit(current, from)) {
+						counts.visitFailures++;
+						break; // taken by another task meanwhile: backtrack
+					}
+					counts.cellsVisited++;
+					if (current == end) {
+						cancellation.cancel();
+						break search;
+					}
+					if (--stepsUntilCheck == 0) {
+						if (cancellation.isCancelled())
+							break search;
+						stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+					}
+					--stepsUntilEstimate;
+					int next = -1;
+					Direction nextFrom = null;
+					for (Direction directionToNeighbor : Direction.VALUES) {
+						if (!grid.hasPassage(current, directionToNeighbor))
+							continue;
+						int neighbor = grid.neighbor(current, directionToNeighbor);
+						if (lab.visitedBefore(neighbor))
+							continue;
+						if (next == -1) {
+							next = neighbor;
+							nextFrom = directionToNeighbor.opposite;
+						} else if (shouldFork(grid, neighbor, directionToNeighbor.opposite, estimateStack)) {
+							addToPendingCount(1);
+							new SearchTask(this, neighbor, directionToNeighbor.opposite).fork();
+							counts.forks++;
+						} else {
+							backtrackStack.push(neighbor);
+							backtrackStack.push(directionToNeighbor.opposite.ordinal());
+						}
+					}
+					if (next == -1)
+						break; // dead end: backtrack
+					current = next;
+					from = nextFrom;
+				}
+				if (!backtrackStack.isEmpty())
+					counts.backtracks++;
+			}
+			lab.stats.add(counts);
+			// Complete once all forked tasks have completed, too
+			tryComplete();
+		}
+
+		private boolean shouldFork(Labyrinth.Grid grid, int neighbor, Direction cameFrom, IntStack estimateStack) {
+			if (getSurplusQueuedTaskCount() > config.maxSurplusTasks || stepsUntilEstimate > 0)
+				return false;
+			if (config.minSubtreeCells == 0)
+				return true;
+			int estimate = estimateSubtree(grid, neighbor, cameFrom, estimateStack);
+			stepsUntilEstimate = estimate;
+			return estimate >= config.minSubtreeCells;
+		}
+
+		/*
+		 * Counts the unvisited cells reachable from neighbor without going back
+		 * through the cell it was reached from, up to config.minSubtreeCells.
+		 * Cells are not marked, so with cycles some may be counted twice, which
+		 * only makes this an overestimate.
+		 */
+		private int estimateSubtree(Labyrinth.Grid grid, int neighbor, Direction cameFrom, IntStack estimateStack) {
+			int count = 0;
+			estimateStack.clear();
+			estimateStack.push(neighbor);
+			estimateStack.push(cameFrom.ordinal());
+			while (!estimateStack.isEmpty() && count < config.minSubtreeCells) {
+				Direction back = Direction.VALUES[estimateStack.pop()];
+				int cell = estimateStack.pop();
+				++count;
+				for (Direction dir : Direction.VALUES) {
+					if (dir == back || !grid.hasPassage(cell, dir))
+						continue;
+					int next = grid.neighbor(cell, dir);
+					if (!lab.visitedBefore(next)) {
+						estimateStack.push(next);
+						estimateStack.push(dir.opposite.ordinal());
+					}
+				}
+			}
+			return count;
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Searches from start and from end at the same time, each side with a
+ * depth-first search on its own thread, and stops as soon as both searches
+ * have visited the same cell. Each side marks its cells in its own
+ * ConcurrentBitSet and records for each of them the direction back to the
+ * cell it came from, so the solution is stitched together by walking back
+ * from the meeting cell to start and to end.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BidirectionalSolver implements LabyrinthSolver {
+
+	private static final int FROM_START = 0;
+	private static final int FROM_END = 1;
+
+	// Per side: cells visited, and the direction back towards start resp. end
+	private ConcurrentBitSet[] visited;
+	private CellDirections[] cameFrom;
+
+	private final AtomicInteger meetingCell = new AtomicInteger();
+	private volatile boolean done;
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		final Labyrinth.Grid grid = lab.grid;
+		final SolverStats stats = lab.stats;
+		prepare((int) grid.cells());
+		final int start = grid.index(grid.start);
+		final int end = grid.index(grid.end);
+
+		// Search from end on a new thread and from start on this one:
+		Thread fromEnd = new Thread("BidirectionalSolver from end") {
+			@Override
+			public void run() {
+				search(grid, FROM_END, end, stats);
+			}
+		};
+		fromEnd.start();
+		search(grid, FROM_START, start, stats);
+		boolean interrupted = false;
+		while (true) {
+			try {
+				fromEnd.join();
+				break;
+			} catch (InterruptedException e) {
+				// Stop the search from end, and wait for it all the same, as
+				// the next solve reuses its state
+				interrupted = true;
+				done = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		int meeting = meetingCell.get();
+		if (meeting == -1)
+			return null; // Both searches are exhausted, so no solution exists (or interrupted)
+		return path(grid, meeting, start, end);
+	}
+
+	// (Re)initialize the state of both searches, reusing it if possible
+	private void prepare(int cells) {
+		if (visited == null || visited[FROM_START].size() != cells) {
+			visited = new ConcurrentBitSet[] { new ConcurrentBitSet(cells), new ConcurrentBitSet(cells) };
+			cameFrom = new CellDirections[] { new CellDirections(cells), new CellDirections(cells) };
+		} else {
+			for (int side = FROM_START; side <= FROM_END; ++side) {
+				visited[side].clear();
+				cameFrom[side].clear();
+			}
+		}
+		meetingCell.set(-1);
+		done = false;
+	}
+
+	private void search(Labyrinth.Grid grid, int side, int origin, SolverStats stats) {
+		SolverStats.Counts counts = new SolverStats.Counts();
+		try {
+			search(grid, side, origin, counts);
+		} finally {
+			stats.add(counts);
+		}
+	}
+
+	private void search(Labyrinth.Grid grid, int side, int origin, SolverStats.Counts counts) {
+		ConcurrentBitSet own = visited[side];
+		ConcurrentBitSet other = visited[1 - side];
+		CellDirections directions = cameFrom[side];
+		IntStack cellsToDo = new IntStack();
+
+		own.trySet(origin);
+		counts.cellsVisited++;
+		if (other.getVolatile(origin)) {
+			meet(origin);
+			return;
+		}
+		cellsToDo.push(origin);
+		while (!cellsToDo.isEmpty() && !done) {
+			int current = cellsToDo.pop();
+			for (Direction directionToNeighbor : Direction.VALUES) {
+				if (!grid.hasPassage(current, directionToNeighbor))
+					continue;
+				int neighbor = grid.neighbor(current, directionToNeighbor);
+				// The search from end walks the solution backwards, so it needs
+				// the passage from neighbor to current (relevant for one-way
+				// passages only):
+				if (side == FROM_END && !grid.hasPassage(neighbor, directionToNeighbor.opposite))
+					continue;
+				if (own.trySet(neighbor)) {
+					counts.cellsVisited++;
+					directions.set(neighbor, directionToNeighbor.opposite);
+					// Visit first, then look at the other side: So if both
+					// sides visit neighbor concurrently, at least one of them
+					// notices (see ConcurrentBitSet.getVolatile()).
+					if (other.getVolatile(neighbor)) {
+						meet(neighbor);
+						return;
+					}
+					cellsToDo.push(neighbor);
+				}
+			}
+		}
+		// This side has visited all cells it can reach without meeting the
+		// other side (unless the other side has found the meeting cell):
+		// No solution exists, so there is no point in continuing the other side.
+		done = true;
+	}
+
+	private void meet(int cell) {
+		meetingCell.compareAndSet(-1, cell);
+		done = true;
+	}
+
+	private Point[] path(Labyrinth.Grid grid, int meeting, int start, int end) {
+		// Walk back from the meeting cell to start ...
+		IntStack backToStart = new IntStack();
+		int cell = meeting;
+		backToStart.push(cell);
+		while (cell != start) {
+			cell = grid.neighbor(cell, cameFrom[FROM_START].get(cell));
+			backToStart.push(cell);
+		}
+		IntStack path = new IntStack(backToStart.size() * 2);
+		while (!backToStart.isEmpty())
+			path.push(backToStart.pop());
+		// ... and on from the meeting cell to end:
+		cell = meeting;
+		while (cell != end) {
+			cell = grid.neighbor(cell, cameFrom[FROM_END].get(cell));
+			path.push(cell);
+		}
+		return grid.toPoints(path);
+	}
+
+}
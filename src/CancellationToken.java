@@ -0,0 +1,21 @@
+/*
+ * Tells the workers of a parallel solver to stop, e.g. as soon as one of them
+ * has found a solution. Workers poll isCancelled() while they search; the
+ * volatile read is cheap, but they only need to do it every CHECK_INTERVAL
+ * cells to stop within a few microseconds of cancel().
+ */
+public final class CancellationToken {
+
+	// Cells a worker may visit between two checks of the token
+	public static final int CHECK_INTERVAL = 64;
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * One Direction per cell index, packed into 2 bits per cell, e.g. the
+ * direction back to the cell a search came from. Different cells may be set
+ * concurrently; each cell's direction is meant to be set by one thread at a
+ * time (e.g. the thread that visited the cell).
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public final class CellDirections {
+
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] words;
+	private final int size;
+
+	public CellDirections(int size) {
+		this.size = size;
+		this.words = new long[(int) (((long) size + 31) >>> 5)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void set(int cell, Direction dir) {
+		// CAS on the whole word, as other cells in it may be set concurrently
+		int index = cell >>> 5;
+		int shift = (cell & 31) << 1;
+		long mask = 3L << shift;
+		long value = (long) dir.ordinal() << shift;
+		long word;
+		do {
+			word = (long) WORDS.getVolatile(words, index);
+		} while (!WORDS.weakCompareAndSet(words, index, word, (word & ~mask) | value));
+	}
+
+	// Only meaningful for cells whose direction has been set
+	public Direction get(int cell) {
+		long word = (long) WORDS.getOpaque(words, cell >>> 5);
+		return Direction.VALUES[(int) (word >>> ((cell & 31) << 1)) & 3];
+	}
+
+	/**
+	 * Resets all directions. Must not run concurrently with any other method.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * A fixed-size set of bits packed into 64-bit words, used as the visited
+ * state of a labyrinth (one bit per cell index, see Labyrinth.Grid).
+ * Several threads may set bits concurrently: trySet() uses a CAS on the
+ * word containing the bit, so exactly one thread wins each bit. clear()
+ * resets all bits in O(words), which allows a solver to be run again
+ * without allocating new state.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public final class ConcurrentBitSet {
+
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] words;
+	private final int size;
+
+	public ConcurrentBitSet(int size) {
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6]; // initially all bits 0
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean get(int i) {
+		// Opaque read: may see a slightly stale word, which only means that
+		// a concurrent trySet() decides who gets the bit.
+		return ((long) WORDS.getOpaque(words, i >>> 6) & (1L << i)) != 0;
+	}
+
+	/**
+	 * Like get(), but sequentially consistent with trySet(): If two threads
+	 * each trySet() a bit in one set and then getVolatile() the same bit in
+	 * another set, at least one of them sees the other's bit.
+	 */
+	public boolean getVolatile(int i) {
+		return ((long) WORDS.getVolatile(words, i >>> 6) & (1L << i)) != 0;
+	}
+
+	public void set(int i) {
+		WORDS.getAndBitwiseOr(words, i >>> 6, 1L << i);
+	}
+
+	/**
+	 * @return true if this call has set the bit, false if it was already set
+	 */
+	public boolean trySet(int i) {
+		int index = i >>> 6;
+		long mask = 1L << i;
+		long word;
+		do {
+			word = (long) WORDS.getVolatile(words, index);
+			if ((word & mask) != 0)
+				return false;
+		} while (!WORDS.weakCompareAndSet(words, index, word, word | mask));
+		return true;
+	}
+
+	public void clear(int i) {
+		WORDS.getAndBitwiseAnd(words, i >>> 6, ~(1L << i));
+	}
+
+	/**
+	 * Resets all bits to 0. Must not run concurrently with any other method.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Runs the queries of a QuerySolver asynchronously, so that one caller can
+ * have thousands of queries in flight at once: Either each query on a virtual
+ * thread of its own, or all of them on a fixed pool of platform threads.
+ *
+ * Virtual threads need Java 21 or later, but this code is compiled for Java
+ * 17, so they are created via reflection and are only available when running
+ * on a newer Java. A query never blocks (the search state pool of QuerySolver
+ * is lock-free), so queries on virtual threads never pin their carrier threads.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public final class ConcurrentQuerySolver implements AutoCloseable {
+
+	private final QuerySolver querySolver = new QuerySolver();
+	private final ExecutorService executor;
+
+	private ConcurrentQuerySolver(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return A solver that starts a new virtual thread for every query
+	 * @throws UnsupportedOperationException
+	 *             If this Java does not have virtual threads
+	 */
+	public static ConcurrentQuerySolver virtualThreads() {
+		ExecutorService executor;
+		try {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException(
+					"Virtual threads need Java 21 or later, this is Java " + Runtime.version().feature());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create virtual threads", e);
+		}
+		return new ConcurrentQuerySolver(executor);
+	}
+
+	public static boolean virtualThreadsAvailable() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	// A solver that runs all queries on the given number of platform threads
+	public static ConcurrentQuerySolver platformThreads(int threads) {
+		return new ConcurrentQuerySolver(Executors.newFixedThreadPool(threads));
+	}
+
+	/**
+	 * Starts a query like QuerySolver.solve() and returns at once.
+	 *
+	 * @return A future completed with the path from from to to, or with null
+	 *         if no such path exists
+	 */
+	public CompletableFuture<Point[]> solve(final Labyrinth.Grid grid, final Point from, final Point to) {
+		return CompletableFuture.supplyAsync(new Supplier<Point[]>() {
+			@Override
+			public Point[] get() {
+				return querySolver.solve(grid, from, to);
+			}
+		}, executor);
+	}
+
+	// Waits for the queries started to finish, then stops the threads
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Dead-end filling: Repeatedly seals every cell (other than start and end)
+ * with exactly one passage, i.e. removes that passage in both directions,
+ * until no such cell is left. On a labyrinth without cycles only the path
+ * from start to end remains, so any solver walks straight along it; on a
+ * labyrinth with cycles the cycles and the corridors between them remain.
+ * This assumes two-way passages, as made by Grid.addPassage().
+ *
+ * The grid is split into stripes of whole rows, one per thread. Each stripe
+ * changes the passages of its own cells only and keeps a worklist of its
+ * cells that have become dead ends. Sealing a cell on the border of a stripe
+ * also removes the opposite passage of a cell in the neighboring stripe; that
+ * cell is sent to the neighboring stripe and handled by it in the next round.
+ * Rounds are repeated until no stripe sends any more cells.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class DeadEndFiller {
+
+	private final int threads;
+
+	public DeadEndFiller(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Fills all dead ends of grid, changing its passages (see Grid.copy() to
+	 * keep the original). grid must not have more than
+	 * Labyrinth.MAX_INT_INDEXED_CELLS cells.
+	 *
+	 * @return The number of cells sealed
+	 */
+	public long fill(Labyrinth.Grid grid) {
+		if (!grid.isIntIndexed())
+			throw new IllegalArgumentException("Grid with " + grid.cells() + " cells is too large for fill()");
+		// An even number of rows per stripe, so that stripes never share a
+		// byte of a store with two cells per byte (see MappedPassageStore):
+		int rowsPerStripe = (grid.height + threads - 1) / threads;
+		rowsPerStripe += rowsPerStripe & 1;
+		List<Stripe> stripes = new ArrayList<Stripe>(threads);
+		for (int y0 = 0; y0 < grid.height; y0 += rowsPerStripe)
+			stripes.add(new Stripe(grid, y0, Math.min(y0 + rowsPerStripe, grid.height)));
+
+		ForkJoinPool pool = stripes.size() > 1 ? new ForkJoinPool(stripes.size()) : null;
+		try {
+			boolean sent;
+			do {
+				if (pool == null) {
+					stripes.get(0).call();
+				} else {
+					for (Future<Void> stripe : pool.invokeAll(stripes))
+						stripe.get();
+				}
+				// Hand the cells sent across each stripe border to the stripe
+				// on the other side (swapping with its empty, processed inbox):
+				sent = false;
+				for (int i = 0; i + 1 < stripes.size(); ++i) {
+					Stripe north = stripes.get(i);
+					Stripe south = stripes.get(i + 1);
+					sent |= !north.toSouth.isEmpty() || !south.toNorth.isEmpty();
+					IntStack inbox = south.fromNorth;
+					south.fromNorth = north.toSouth;
+					north.toSouth = inbox;
+					inbox = north.fromSouth;
+					north.fromSouth = south.toNorth;
+					south.toNorth = inbox;
+				}
+			} while (sent);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while filling dead ends", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Filling dead ends failed", e.getCause());
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+
+		long sealed = 0;
+		for (Stripe stripe : stripes)
+			sealed += stripe.sealed;
+		return sealed;
+	}
+
+	/*
+	 * The rows [y0, y1) of the grid. Each call() is one round: The first one
+	 * looks for dead ends in all cells of the stripe, later ones only at the
+	 * cells sent by the neighboring stripes.
+	 */
+	private static final class Stripe implements Callable<Void> {
+
+		private final Labyrinth.Grid grid;
+		private final int firstCell;
+		private final int endCell; // exclusive
+		private final int start;
+		private final int end;
+
+		private final IntStack deadEnds = new IntStack();
+		// Cells of the neighboring stripes whose passage into this stripe
+		// has been removed in this round, to be processed by them next round:
+		private IntStack toNorth = new IntStack();
+		private IntStack toSouth = new IntStack();
+		// Cells of this stripe whose passage into the neighboring stripe has
+		// been removed in the previous round, to be processed in this round:
+		private IntStack fromNorth = new IntStack();
+		private IntStack fromSouth = new IntStack();
+
+		private boolean scanned;
+		private long sealed;
+
+		Stripe(Labyrinth.Grid grid, int y0, int y1) {
+			this.grid = grid;
+			this.firstCell = grid.index(0, y0);
+			this.endCell = grid.index(0, y1);
+			this.start = grid.index(grid.start);
+			this.end = grid.index(grid.end);
+		}
+
+		@Override
+		public Void call() {
+			if (!scanned) {
+				for (int cell = firstCell; cell < endCell; ++cell)
+					if (isDeadEnd(cell))
+						deadEnds.push(cell);
+				scanned = true;
+			}
+			receive(fromNorth, Direction.N);
+			receive(fromSouth, Direction.S);
+			while (!deadEnds.isEmpty()) {
+				int cell = deadEnds.pop();
+				if (isDeadEnd(cell)) // unless sealed via its neighbor meanwhile
+					seal(cell);
+			}
+			return null;
+		}
+
+		// Removes the passages in direction dir from the cells in inbox
+		private void receive(IntStack inbox, Direction dir) {
+			while (!inbox.isEmpty())
+				removePassage(inbox.pop(), dir);
+		}
+
+		private void seal(int cell) {
+			Direction dir = Direction.VALUES[Integer.numberOfTrailingZeros(grid.passages(cell))];
+			grid.passages.set(cell, 0);
+			++sealed;
+			int neighbor = grid.neighbor(cell, dir);
+			if (neighbor < firstCell)
+				toNorth.push(neighbor);
+			else if (neighbor >= endCell)
+				toSouth.push(neighbor);
+			else
+				removePassage(neighbor, dir.opposite);
+		}
+
+		private void removePassage(int cell, Direction dir) {
+			grid.passages.set(cell, grid.passages(cell) & ~dir.bit);
+			if (isDeadEnd(cell))
+				deadEnds.push(cell);
+		}
+
+		private boolean isDeadEnd(int cell) {
+			return Integer.bitCount(grid.passages(cell)) == 1 && cell != start && cell != end;
+		}
+	}
+}
@@ -8,6 +8,10 @@ public enum Direction {
 	final int dy;
 	public Direction opposite;
 
+	// Shared copy of values(): values() returns a fresh clone on every call,
+	// which hurts in the per-cell loops of the solvers. Must not be modified.
+	static final Direction[] VALUES = values();
+
 	// use the static initializer to resolve forward references
 	static {
 		N.opposite = S;
@@ -0,0 +1,524 @@
+/*
+ * A solver for labyrinths that are too large for one JVM: It starts a number
+ * of worker processes (see DistributedSolverWorker) on this machine, each of
+ * which maps one horizontal band of rows of the grid file (see
+ * GridFile.mapRows()) and searches it depth-first, with visited state for its
+ * band only. Where a passage crosses into another band, the worker sends the
+ * cell (a crossing) to this coordinator, which routes it to the owner of that
+ * band. Workers and coordinator talk over loopback TCP with NIO channels, in
+ * frames carrying batches of crossings.
+ *
+ * The coordinator also detects the end of the search: It counts the
+ * crossings routed but not yet processed (a worker sends the crossings found
+ * while processing a batch before it acknowledges the batch). Once a worker
+ * has reached end, or once no crossings are pending, it stops all workers and
+ * then collects the path from end back to start, band by band.
+ *
+ * solve() takes labyrinths with the grid in the file only. For grids with too
+ * many cells for Labyrinth.solve(), run main() instead.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DistributedSolver implements SolverEngine {
+
+	/*
+	 * Frame types. A frame is a type byte, the int length of its payload, and
+	 * the payload. Crossings are a long cell index and a byte with the
+	 * ordinal of the direction back to the cell they were reached from (-1
+	 * for start); cells are long cell indices.
+	 */
+	static final byte HELLO = 1; // worker -> coordinator: int worker index
+	static final byte SOLVE = 2; // coordinator -> worker: forget the previous solve
+	static final byte CROSSINGS = 3; // both ways: crossings
+	static final byte PROCESSED = 4; // worker -> coordinator: int number of crossings processed
+	static final byte FOUND = 5; // worker -> coordinator: end reached
+	static final byte STOP = 6; // coordinator -> worker: stop searching
+	static final byte STOPPED = 7; // worker -> coordinator: no more frames for this solve
+	static final byte PATH_REQUEST = 8; // coordinator -> worker: cell
+	static final byte PATH = 9; // worker -> coordinator: cells back from that cell, then the next cell or -1
+	static final byte CLOSE = 10; // coordinator -> worker: exit
+
+	static final int CROSSING_BYTES = 8 + 1;
+	static final byte NO_DIRECTION = -1;
+
+	// Time allowed for the worker processes to connect
+	private static final long CONNECT_TIMEOUT_MILLIS = 60000;
+
+	private final Path gridFile;
+	private final int processes;
+
+	// Set by open(), null unless open
+	private Labyrinth.Grid grid; // mapped, for its size only
+	private Band[] bands;
+
+	// Per solve: Set once by finish()
+	private boolean solveDone; // guarded by this, volatile reads as well
+	private volatile boolean found;
+	private volatile IOException failure;
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicLong routed = new AtomicLong(); // crossings, for the statistics
+	private CountDownLatch stopped;
+	private final BlockingQueue<ByteBuffer> pathSegments = new LinkedBlockingQueue<ByteBuffer>();
+
+	public DistributedSolver(Path gridFile) {
+		this(gridFile, Runtime.getRuntime().availableProcessors());
+	}
+
+	public DistributedSolver(Path gridFile, int processes) {
+		this.gridFile = gridFile;
+		this.processes = processes;
+	}
+
+	/**
+	 * Starts the worker processes and waits for them to connect.
+	 *
+	 * @throws IllegalStateException
+	 *             If the grid file cannot be read or a worker fails to start
+	 */
+	@Override
+	public void open() {
+		if (this.bands != null)
+			return;
+		this.failure = null;
+		this.pathSegments.clear();
+		try {
+			this.grid = GridFile.map(this.gridFile);
+			int bandCount = Math.max(1, Math.min(this.processes, this.grid.height));
+			Band[] bands = new Band[bandCount];
+			for (int i = 0; i < bandCount; ++i)
+				bands[i] = new Band(i, (int) ((long) this.grid.height * i / bandCount),
+						(int) ((long) this.grid.height * (i + 1) / bandCount));
+			try (ServerSocketChannel server = ServerSocketChannel.open()) {
+				server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+				for (Band band : bands)
+					band.process = startWorker(port, band);
+				accept(server, bands);
+			} catch (IOException e) {
+				for (Band band : bands)
+					if (band.process != null)
+						band.process.destroy();
+				throw e;
+			}
+			for (Band band : bands)
+				band.reader.start();
+			this.bands = bands;
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot start the workers for " + this.gridFile, e);
+		}
+	}
+
+	private Process startWorker(int port, Band band) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "DistributedSolverWorker",
+				Integer.toString(port), this.gridFile.toString(), Integer.toString(band.index),
+				Integer.toString(band.firstRow), Integer.toString(band.endRow - band.firstRow)).inheritIO().start();
+	}
+
+	// Waits for all workers to connect and say which band they are
+	private void accept(ServerSocketChannel server, Band[] bands) throws IOException {
+		server.configureBlocking(false);
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+		try (Selector selector = Selector.open()) {
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			for (int connected = 0; connected < bands.length;) {
+				selector.select(100);
+				selector.selectedKeys().clear();
+				SocketChannel channel;
+				while ((channel = server.accept()) != null) {
+					channel.configureBlocking(true);
+					Connection connection = new Connection(channel);
+					if (connection.read() != HELLO)
+						throw new IOException("Worker did not say hello");
+					Band band = bands[connection.payload().getInt()];
+					band.connection = connection;
+					band.reader = new Thread(band, "DistributedSolver band #" + band.index);
+					band.reader.setDaemon(true);
+					++connected;
+				}
+				for (Band band : bands)
+					if (band.connection == null && !band.process.isAlive())
+						throw new IOException("Worker #" + band.index + " exited with " + band.process.exitValue());
+				if (System.currentTimeMillis() > deadline)
+					throw new IOException("Workers did not connect within " + CONNECT_TIMEOUT_MILLIS + "ms");
+			}
+		}
+	}
+
+	// Waits for the workers to exit
+	@Override
+	public void close() {
+		if (this.bands == null)
+			return;
+		boolean interrupted = false;
+		for (Band band : this.bands) {
+			try {
+				band.connection.closeRequested = true;
+				band.connection.write(CLOSE);
+			} catch (IOException e) {
+				// Gone already
+			}
+		}
+		for (Band band : this.bands) {
+			try {
+				band.process.waitFor();
+				band.reader.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				band.process.destroy();
+			}
+			band.connection.close();
+		}
+		this.bands = null;
+		this.grid = null;
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If the grid of lab is not the one in the grid file
+	 * @throws IllegalStateException
+	 *             If a worker fails
+	 */
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		SolverStats.Counts counts = new SolverStats.Counts();
+		try {
+			return solve(lab.grid, counts);
+		} finally {
+			lab.stats.add(counts);
+		}
+	}
+
+	/**
+	 * Like solve(lab), but for a grid of any size, also one with too many
+	 * cells for a Labyrinth, and without the per-cell state of a Labyrinth.
+	 * Adds to counts what it did.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If grid is not the one in the grid file
+	 * @throws IllegalStateException
+	 *             If a worker fails
+	 */
+	public Point[] solve(Labyrinth.Grid grid, SolverStats.Counts counts) {
+		if (this.bands == null)
+			throw new IllegalStateException("DistributedSolver is not open");
+		if (grid.width != this.grid.width || grid.height != this.grid.height || !grid.start.equals(this.grid.start)
+				|| !grid.end.equals(this.grid.end))
+			throw new IllegalArgumentException("Labyrinth is not the one in " + this.gridFile);
+		if (this.failure != null)
+			throw new IllegalStateException("A worker has failed", this.failure);
+		synchronized (this) {
+			this.solveDone = false;
+		}
+		this.found = false;
+		this.pending.set(1);
+		this.stopped = new CountDownLatch(this.bands.length);
+		boolean interrupted = false;
+		try {
+			for (Band band : this.bands)
+				band.connection.write(SOLVE);
+			ByteBuffer start = ByteBuffer.allocate(CROSSING_BYTES);
+			start.putLong(grid.cellIndex(grid.start.x, grid.start.y)).put(NO_DIRECTION).flip();
+			bandOf(grid.start.y).route(start);
+			while (true) {
+				try {
+					this.stopped.await();
+					break;
+				} catch (InterruptedException e) {
+					// Stop the workers, and wait for them all the same
+					interrupted = true;
+					finish(false);
+				}
+			}
+			counts.forks += this.routed.getAndSet(0);
+			if (this.failure != null)
+				throw new IllegalStateException("A worker has failed", this.failure);
+			return this.found ? path(grid) : null;
+		} catch (IOException e) {
+			throw new IllegalStateException("Lost a worker", e);
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	// Collects the path back from end, from the owner of each band it passes
+	private Point[] path(Labyrinth.Grid grid) throws IOException {
+		ArrayList<Point> path = new ArrayList<Point>();
+		long cell = grid.cellIndex(grid.end.x, grid.end.y);
+		ByteBuffer request = ByteBuffer.allocate(8);
+		while (cell != -1) {
+			request.clear();
+			request.putLong(cell).flip();
+			bandOf(grid.y(cell)).connection.write(PATH_REQUEST, request);
+			ByteBuffer segment;
+			try {
+				segment = this.pathSegments.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while collecting the path");
+			}
+			if (segment.remaining() == 0)
+				throw new IllegalStateException("A worker has failed", this.failure);
+			while (segment.remaining() > 8)
+				path.add(grid.point(segment.getLong()));
+			cell = segment.getLong();
+		}
+		Point[] result = new Point[path.size()];
+		for (int i = 0; i < result.length; ++i)
+			result[i] = path.get(result.length - 1 - i);
+		return result;
+	}
+
+	private Band bandOf(int y) {
+		int i = (int) ((long) y * this.bands.length / this.grid.height);
+		while (this.bands[i].endRow <= y)
+			++i;
+		while (this.bands[i].firstRow > y)
+			--i;
+		return this.bands[i];
+	}
+
+	// Ends the current solve, unless already done, and stops all workers
+	private void finish(boolean found) {
+		synchronized (this) {
+			if (this.solveDone)
+				return;
+			this.found = found;
+			this.solveDone = true;
+		}
+		for (Band band : this.bands) {
+			try {
+				band.connection.write(STOP);
+			} catch (IOException e) {
+				// Its reader fails, too
+			}
+		}
+	}
+
+	private synchronized boolean solveDone() {
+		return this.solveDone;
+	}
+
+	/*
+	 * A band of rows, owned by one worker process, and the thread reading the
+	 * frames from that worker.
+	 */
+	private final class Band implements Runnable {
+		final int index;
+		final int firstRow;
+		final int endRow; // exclusive
+		Process process;
+		Connection connection;
+		Thread reader;
+
+		Band(int index, int firstRow, int endRow) {
+			this.index = index;
+			this.firstRow = firstRow;
+			this.endRow = endRow;
+		}
+
+		// Sends crossings into this band to its worker, unless the solve is done
+		void route(ByteBuffer crossings) throws IOException {
+			synchronized (this.connection) {
+				// Under the connection's lock, so that no crossings follow STOP
+				if (!solveDone())
+					this.connection.write(CROSSINGS, crossings);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					byte type = this.connection.read();
+					ByteBuffer payload = this.connection.payload();
+					if (type == CROSSINGS) {
+						routeAll(payload);
+					} else if (type == PROCESSED) {
+						if (pending.addAndGet(-payload.getInt()) == 0)
+							finish(false);
+					} else if (type == FOUND) {
+						finish(true);
+					} else if (type == STOPPED) {
+						stopped.countDown();
+					} else if (type == PATH) {
+						ByteBuffer segment = ByteBuffer.allocate(payload.remaining());
+						segment.put(payload).flip();
+						pathSegments.add(segment);
+					} else {
+						throw new IOException("Unexpected frame " + type + " from worker #" + this.index);
+					}
+				}
+			} catch (EOFException e) {
+				// The worker has exited
+				if (!this.connection.closeRequested)
+					fail(new IOException("Worker #" + this.index + " has exited"));
+			} catch (IOException e) {
+				if (!this.connection.closeRequested)
+					fail(e);
+			}
+		}
+
+		// Routes a batch of crossings from this band into the bands they lead to
+		private void routeAll(ByteBuffer crossings) throws IOException {
+			if (solveDone())
+				return;
+			int count = crossings.remaining() / CROSSING_BYTES;
+			pending.addAndGet(count);
+			routed.addAndGet(count);
+			// Crossings only lead into the bands just above and below this one
+			ByteBuffer above = ByteBuffer.allocate(crossings.remaining());
+			ByteBuffer below = ByteBuffer.allocate(crossings.remaining());
+			long firstCell = (long) this.firstRow * grid.width;
+			for (int i = 0; i < count; ++i) {
+				long cell = crossings.getLong();
+				byte from = crossings.get();
+				(cell < firstCell ? above : below).putLong(cell).put(from);
+			}
+			above.flip();
+			below.flip();
+			if (above.hasRemaining())
+				bands[this.index - 1].route(above);
+			if (below.hasRemaining())
+				bands[this.index + 1].route(below);
+		}
+
+		private void fail(IOException e) {
+			failure = e;
+			finish(false);
+			// Do not wait for this worker anymore
+			stopped.countDown();
+			pathSegments.add(ByteBuffer.allocate(0));
+		}
+	}
+
+	/*
+	 * Frames over a blocking socket channel, see the frame types above. One
+	 * thread reads, any number of threads may write.
+	 */
+	static final class Connection {
+
+		private final SocketChannel channel;
+		private final ByteBuffer readHeader = ByteBuffer.allocate(5);
+		private final ByteBuffer writeHeader = ByteBuffer.allocate(5);
+		private ByteBuffer payload = ByteBuffer.allocate(1 << 16);
+		// Set when closing, so that the reader expects the channel to be closed
+		volatile boolean closeRequested;
+
+		Connection(SocketChannel channel) throws IOException {
+			this.channel = channel;
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		}
+
+		static Connection connect(int port) throws IOException {
+			return new Connection(SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port)));
+		}
+
+		/**
+		 * Reads the next frame; its payload is then available from payload()
+		 * until the next read().
+		 *
+		 * @return The type of the frame
+		 * @throws EOFException
+		 *             If the other side has closed the connection
+		 */
+		byte read() throws IOException {
+			this.readHeader.clear();
+			readFully(this.readHeader);
+			this.readHeader.flip();
+			byte type = this.readHeader.get();
+			int length = this.readHeader.getInt();
+			if (length > this.payload.capacity())
+				this.payload = ByteBuffer.allocate(Math.max(length, this.payload.capacity() * 2));
+			this.payload.clear().limit(length);
+			readFully(this.payload);
+			this.payload.flip();
+			return type;
+		}
+
+		ByteBuffer payload() {
+			return this.payload;
+		}
+
+		void write(byte type) throws IOException {
+			write(type, ByteBuffer.allocate(0));
+		}
+
+		// Writes the remaining bytes of payload as a frame of the given type
+		synchronized void write(byte type, ByteBuffer payload) throws IOException {
+			this.writeHeader.clear();
+			this.writeHeader.put(type).putInt(payload.remaining()).flip();
+			ByteBuffer[] frame = { this.writeHeader, payload };
+			while (payload.hasRemaining() || this.writeHeader.hasRemaining())
+				this.channel.write(frame);
+		}
+
+		void close() {
+			this.closeRequested = true;
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				// Nothing left to do
+			}
+		}
+
+		private void readFully(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining())
+				if (this.channel.read(buffer) < 0)
+					throw new EOFException();
+		}
+	}
+
+	/**
+	 * Solves the labyrinth in a grid file, also one with too many cells for
+	 * Labyrinth.solve().
+	 *
+	 * @param args
+	 *            The grid file (see GridFile), and optionally the number of
+	 *            worker processes (default: one per processor)
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args[0]);
+		int processes = args.length >= 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		// No Labyrinth, which would need state for every cell
+		Labyrinth.Grid grid = GridFile.map(file);
+		System.out.println("Labyrinth dimensions: " + grid.width + "x" + grid.height);
+		try (DistributedSolver solver = new DistributedSolver(file, processes)) {
+			solver.open();
+			long startTime = System.nanoTime();
+			Point[] solution = solver.solve(grid, new SolverStats.Counts());
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+			if (solution == null) {
+				System.out.println("No solution, found by " + processes + " processes in " + millis + "ms.");
+				return;
+			}
+			System.out.println("Computed distributed solution of length " + solution.length + " with " + processes
+					+ " processes in " + millis + "ms.");
+			if (Labyrinth.checkSolution(grid, solution))
+				System.out.println("Solution correct :-)");
+			else
+				System.out.println("Solution incorrect :-(");
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * A worker process of a DistributedSolver (see there for the protocol): It
+ * maps one band of rows of the grid file and searches it depth-first from
+ * each crossing the coordinator sends, with visited state for its band only.
+ * Crossings out of the band are collected and sent in batches, at the latest
+ * before the batch that led to them is acknowledged.
+ *
+ * One thread reads the frames from the coordinator, so that a STOP takes
+ * effect at once, and queues them for the main thread, which searches.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public final class DistributedSolverWorker {
+
+	// Crossings collected before they are sent without waiting for the batch
+	// to be done, so that other workers need not wait too long for work
+	private static final int CROSSINGS_PER_BATCH = 4096;
+
+	private final Labyrinth.Grid grid; // only the band's rows are mapped
+	private final DistributedSolver.Connection connection;
+	private final long firstCell; // of the band
+	private final int cells; // of the band
+	private final long start;
+	private final long end;
+
+	// By cell index within the band: Plain accesses, as only the main thread
+	// searches
+	private final long[] visited;
+	private final long[] cameFrom; // never cleared, see ParallelBFSSolver
+
+	private final IntStack stack = new IntStack();
+	private final ByteBuffer crossings = ByteBuffer
+			.allocate(CROSSINGS_PER_BATCH * DistributedSolver.CROSSING_BYTES);
+
+	// Frames read but not yet handled, and whether the current solve has been
+	// stopped (both set by the reading thread)
+	private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<Frame>();
+	private volatile boolean stopped;
+
+	private static final class Frame {
+		final byte type;
+		final ByteBuffer payload;
+
+		Frame(byte type, ByteBuffer payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+
+	private DistributedSolverWorker(Labyrinth.Grid grid, DistributedSolver.Connection connection, int firstRow,
+			int rows) {
+		this.grid = grid;
+		this.connection = connection;
+		this.firstCell = (long) firstRow * grid.width;
+		long cells = (long) rows * grid.width;
+		if (cells > Labyrinth.MAX_INT_INDEXED_CELLS)
+			throw new IllegalArgumentException("Band of " + rows + " rows has too many cells, use more processes");
+		this.cells = (int) cells;
+		this.start = grid.cellIndex(grid.start.x, grid.start.y);
+		this.end = grid.cellIndex(grid.end.x, grid.end.y);
+		this.visited = new long[(this.cells + 63) >>> 6];
+		this.cameFrom = new long[(this.cells + 31) >>> 5];
+	}
+
+	// Handles the frames from the coordinator until it sends CLOSE
+	private void work() throws IOException, InterruptedException {
+		while (true) {
+			Frame frame = this.frames.take();
+			switch (frame.type) {
+			case DistributedSolver.SOLVE:
+				Arrays.fill(this.visited, 0L);
+				break;
+			case DistributedSolver.CROSSINGS:
+				// Skipped once stopped: the coordinator does not wait for them
+				if (!this.stopped)
+					process(frame.payload);
+				break;
+			case DistributedSolver.STOP:
+				this.crossings.clear();
+				this.connection.write(DistributedSolver.STOPPED);
+				break;
+			case DistributedSolver.PATH_REQUEST:
+				this.connection.write(DistributedSolver.PATH, pathBack(frame.payload.getLong()));
+				break;
+			case DistributedSolver.CLOSE:
+				return;
+			default:
+				throw new IOException("Unexpected frame " + frame.type);
+			}
+		}
+	}
+
+	// Reads the frames from the coordinator until the connection is closed
+	private void read() {
+		try {
+			while (true) {
+				byte type = this.connection.read();
+				ByteBuffer payload = this.connection.payload();
+				ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+				copy.put(payload).flip();
+				// In the order of the frames, so that a solve is stopped
+				// after its SOLVE
+				if (type == DistributedSolver.SOLVE)
+					this.stopped = false;
+				else if (type == DistributedSolver.STOP)
+					this.stopped = true;
+				this.frames.add(new Frame(type, copy));
+				if (type == DistributedSolver.CLOSE)
+					return;
+			}
+		} catch (IOException e) {
+			// The coordinator is gone: exit
+			this.frames.add(new Frame(DistributedSolver.CLOSE, null));
+		}
+	}
+
+	// Searches from each of a batch of crossings, then acknowledges it
+	private void process(ByteBuffer batch) throws IOException {
+		int count = batch.remaining() / DistributedSolver.CROSSING_BYTES;
+		for (int i = 0; i < count && !this.stopped; ++i) {
+			long cell = batch.getLong();
+			byte from = batch.get();
+			if (explore(cell, from == DistributedSolver.NO_DIRECTION ? null : Direction.VALUES[from])) {
+				this.connection.write(DistributedSolver.FOUND);
+				return;
+			}
+		}
+		sendCrossings();
+		ByteBuffer processed = ByteBuffer.allocate(4);
+		processed.putInt(count).flip();
+		this.connection.write(DistributedSolver.PROCESSED, processed);
+	}
+
+	/*
+	 * Visits cell, reached from its neighbor in direction from, and all cells
+	 * of the band reachable from it within the band, collecting the crossings
+	 * out of the band. Returns true if end has been reached.
+	 */
+	private boolean explore(long cell, Direction from) throws IOException {
+		int first = (int) (cell - this.firstCell);
+		if (!visit(first, from))
+			return false;
+		if (cell == this.end)
+			return true;
+		IntStack stack = this.stack;
+		stack.push(first);
+		int stepsUntilCheck = 1;
+		while (!stack.isEmpty()) {
+			if (--stepsUntilCheck == 0) {
+				if (this.stopped) {
+					stack.clear();
+					return false;
+				}
+				stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+			}
+			int current = stack.pop();
+			long currentCell = this.firstCell + current;
+			for (Direction directionToNeighbor : Direction.VALUES) {
+				if (!this.grid.hasPassage(currentCell, directionToNeighbor))
+					continue;
+				long neighbor = (long) current + directionToNeighbor.dy * this.grid.width + directionToNeighbor.dx;
+				if (neighbor < 0 || neighbor >= this.cells) {
+					// Out of the band, unless back where current was reached from
+					if (currentCell != this.start && cameFrom(current) == directionToNeighbor)
+						continue;
+					if (!this.crossings.hasRemaining())
+						sendCrossings();
+					this.crossings.putLong(this.firstCell + neighbor).put((byte) directionToNeighbor.opposite.ordinal());
+				} else if (visit((int) neighbor, directionToNeighbor.opposite)) {
+					if (this.firstCell + neighbor == this.end) {
+						stack.clear();
+						return true;
+					}
+					stack.push((int) neighbor);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void sendCrossings() throws IOException {
+		this.crossings.flip();
+		if (this.crossings.hasRemaining())
+			this.connection.write(DistributedSolver.CROSSINGS, this.crossings);
+		this.crossings.clear();
+	}
+
+	/**
+	 * @return The cells back from cell to where the path leaves the band, or
+	 *         to start, followed by the next cell (out of the band), or by -1
+	 *         at start
+	 */
+	private ByteBuffer pathBack(long cell) {
+		int length = 1;
+		int current = (int) (cell - this.firstCell);
+		long next;
+		while (true) {
+			if (this.firstCell + current == this.start) {
+				next = -1;
+				break;
+			}
+			Direction back = cameFrom(current);
+			long neighbor = (long) current + back.dy * this.grid.width + back.dx;
+			if (neighbor < 0 || neighbor >= this.cells) {
+				next = this.firstCell + neighbor;
+				break;
+			}
+			current = (int) neighbor;
+			++length;
+		}
+		ByteBuffer path = ByteBuffer.allocate((length + 1) * 8);
+		current = (int) (cell - this.firstCell);
+		for (int i = 0; i < length; ++i) {
+			path.putLong(this.firstCell + current);
+			if (i < length - 1) {
+				Direction back = cameFrom(current);
+				current += back.dy * this.grid.width + back.dx;
+			}
+		}
+		path.putLong(next).flip();
+		return path;
+	}
+
+	private boolean visit(int cell, Direction from) {
+		long bit = 1L << cell;
+		if ((this.visited[cell >>> 6] & bit) != 0)
+			return false;
+		this.visited[cell >>> 6] |= bit;
+		if (from != null) {
+			int shift = (cell & 31) << 1;
+			this.cameFrom[cell >>> 5] = (this.cameFrom[cell >>> 5] & ~(3L << shift))
+					| ((long) from.ordinal() << shift);
+		}
+		return true;
+	}
+
+	// Only meaningful for visited cells other than start
+	private Direction cameFrom(int cell) {
+		return Direction.VALUES[(int) (this.cameFrom[cell >>> 5] >>> ((cell & 31) << 1)) & 3];
+	}
+
+	/**
+	 * Started by DistributedSolver.open().
+	 *
+	 * @param args
+	 *            The coordinator's port on the loopback address, the grid
+	 *            file, the index of this worker, and the first row and number
+	 *            of rows of its band
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = Integer.parseInt(args[0]);
+		int index = Integer.parseInt(args[2]);
+		int firstRow = Integer.parseInt(args[3]);
+		int rows = Integer.parseInt(args[4]);
+		Labyrinth.Grid grid = GridFile.mapRows(Paths.get(args[1]), firstRow, rows);
+		DistributedSolver.Connection connection = DistributedSolver.Connection.connect(port);
+		final DistributedSolverWorker worker = new DistributedSolverWorker(grid, connection, firstRow, rows);
+		ByteBuffer hello = ByteBuffer.allocate(4);
+		hello.putInt(index).flip();
+		connection.write(DistributedSolver.HELLO, hello);
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				worker.read();
+			}
+		}, "DistributedSolverWorker reader");
+		reader.setDaemon(true);
+		reader.start();
+		try {
+			worker.work();
+		} finally {
+			connection.close();
+		}
+	}
+}
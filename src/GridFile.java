@@ -0,0 +1,203 @@
+/*
+ * Binary file format for a Labyrinth.Grid, version 1. All numbers are
+ * big-endian ints:
+ *
+ *   magic ("LABY"), version, width, height,
+ *   start x, start y, end x, end y,
+ *   (width * height + 1) / 2 bytes with the passages of all cells in index
+ *   order, two cells per byte (see MappedPassageStore).
+ *
+ * map() does not read the passages, but maps them into memory, so opening
+ * even a huge grid takes milliseconds and the solvers read the passages
+ * directly from the mapping. Grids from .ser files written by earlier
+ * versions can still be imported with Labyrinth.loadGrid().
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class GridFile {
+
+	public static final String EXTENSION = ".lab";
+
+	static final int MAGIC = 0x4C414259; // "LABY"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 8 * 4;
+
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	private GridFile() {
+	}
+
+	public static void write(Labyrinth.Grid grid, Path file) throws IOException {
+		try (Writer writer = writer(file, grid.width, grid.height, grid.start, grid.end)) {
+			long cells = grid.cells();
+			for (long cell = 0; cell < cells; ++cell)
+				writer.write(grid.passages.get(cell));
+		}
+	}
+
+	/**
+	 * @return A writer for a new grid file of the given size, start and end,
+	 *         to which the passages of all cells must then be written
+	 */
+	public static Writer writer(Path file, int width, int height, Point start, Point end) throws IOException {
+		return new Writer(file, width, height, start, end);
+	}
+
+	/*
+	 * Writes the passages of a grid file cell by cell in index order, so that
+	 * a grid can be written while it is generated, without ever holding all
+	 * of it (see StreamingGenerator).
+	 */
+	public static final class Writer implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+		private final long cells;
+		private long written;
+		private int evenCell; // passages of the last cell written if written is odd
+
+		private Writer(Path file, int width, int height, Point start, Point end) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			cells = (long) width * height;
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+			buffer.putInt(start.x).putInt(start.y).putInt(end.x).putInt(end.y);
+		}
+
+		// Writes the passages of the next cell
+		public void write(int passages) throws IOException {
+			if (written == cells)
+				throw new IllegalStateException("All " + cells + " cells have been written");
+			if ((written & 1) == 0) {
+				evenCell = passages & 0xF;
+			} else {
+				if (!buffer.hasRemaining())
+					writeFully(channel, buffer);
+				buffer.put((byte) (evenCell | (passages & 0xF) << 4));
+			}
+			++written;
+		}
+
+		/**
+		 * @throws IOException
+		 *             Also if not all cells have been written
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				if ((written & 1) != 0) {
+					if (!buffer.hasRemaining())
+						writeFully(channel, buffer);
+					buffer.put((byte) evenCell);
+				}
+				writeFully(channel, buffer);
+				if (written != cells)
+					throw new IOException("Only " + written + " of " + cells + " cells have been written");
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * @return The grid in file, backed by a read-only mapping of the file
+	 */
+	public static Labyrinth.Grid map(Path file) throws IOException {
+		return map(file, FileChannel.MapMode.READ_ONLY);
+	}
+
+	static Labyrinth.Grid map(Path file, FileChannel.MapMode mode) throws IOException {
+		return map(file, mode, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Like map(), but only maps the passages of the rows from firstRow on
+	 * (up to rows of them), e.g. for a process that only searches these rows.
+	 * The grid is addressed by the cell indices of the whole grid as usual;
+	 * the passages of other cells must not be accessed.
+	 */
+	public static Labyrinth.Grid mapRows(Path file, int firstRow, int rows) throws IOException {
+		return map(file, FileChannel.MapMode.READ_ONLY, firstRow, rows);
+	}
+
+	private static Labyrinth.Grid map(Path file, FileChannel.MapMode mode, int firstRow, int rows)
+			throws IOException {
+		StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+				? new StandardOpenOption[] { StandardOpenOption.READ }
+				: new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+		try (FileChannel channel = FileChannel.open(file, options)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0)
+				;
+			if (header.hasRemaining() || header.getInt(0) != MAGIC)
+				throw new IOException(file + " is not a labyrinth grid file");
+			header.flip();
+			header.getInt(); // magic
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported version " + version);
+			int width = header.getInt();
+			int height = header.getInt();
+			Point start = new Point(header.getInt(), header.getInt());
+			Point end = new Point(header.getInt(), header.getInt());
+			long cells = (long) width * height;
+			if (channel.size() < HEADER_BYTES + (cells + 1) / 2)
+				throw new IOException(file + " is truncated");
+			if (firstRow < 0 || firstRow > height)
+				throw new IllegalArgumentException("Row " + firstRow + " is not in " + file);
+			// From the first cell of a byte, as two cells share one
+			long firstCell = ((long) firstRow * width) & ~1L;
+			long endCell = (long) (firstRow + Math.min(rows, height - firstRow)) * width;
+			PassageStore passages = new MappedPassageStore(channel, mode, HEADER_BYTES + firstCell / 2,
+					endCell - firstCell);
+			if (firstCell != 0 || endCell != cells)
+				passages = new RowsPassageStore(passages, firstCell, cells);
+			return new Labyrinth.Grid(width, height, start, end, passages);
+		}
+	}
+
+	/*
+	 * The passages of some rows of a grid, addressed by the cell indices of
+	 * the whole grid (see mapRows()).
+	 */
+	private static final class RowsPassageStore implements PassageStore {
+
+		private final PassageStore rows;
+		private final long firstCell;
+		private final long cells;
+
+		RowsPassageStore(PassageStore rows, long firstCell, long cells) {
+			this.rows = rows;
+			this.firstCell = firstCell;
+			this.cells = cells;
+		}
+
+		@Override
+		public long cells() {
+			return cells;
+		}
+
+		@Override
+		public int get(long cell) {
+			return rows.get(cell - firstCell);
+		}
+
+		@Override
+		public void set(long cell, int passages) {
+			rows.set(cell - firstCell, passages);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
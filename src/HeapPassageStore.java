@@ -0,0 +1,30 @@
+/*
+ * Passages kept on the Java heap, one byte per cell. Writing a cell never
+ * touches another cell, so different cells may be written concurrently
+ * (as LabyrinthGenerator.generateParallel() does).
+ */
+
+public final class HeapPassageStore implements PassageStore {
+
+	private final byte[] passages;
+
+	public HeapPassageStore(int cells) {
+		passages = new byte[cells]; // initially all 0, i.e. no passages
+	}
+
+	@Override
+	public long cells() {
+		return passages.length;
+	}
+
+	@Override
+	public int get(long cell) {
+		return passages[(int) cell];
+	}
+
+	@Override
+	public void set(long cell, int passages) {
+		this.passages[(int) cell] = (byte) passages;
+	}
+
+}
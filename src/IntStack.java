@@ -0,0 +1,72 @@
+/*
+ * A growable stack of primitive ints. The solvers use it for paths and
+ * backtracking information expressed as cell indices (see Labyrinth.Grid),
+ * so pushing and popping never boxes or allocates per element.
+ */
+
+import java.util.Arrays;
+
+public final class IntStack {
+
+	private int[] elements;
+	private int size;
+
+	public IntStack() {
+		this(16);
+	}
+
+	public IntStack(int initialCapacity) {
+		elements = new int[Math.max(initialCapacity, 1)];
+		size = 0;
+	}
+
+	private IntStack(int[] elements, int size) {
+		this.elements = elements;
+		this.size = size;
+	}
+
+	public void push(int value) {
+		if (size == elements.length)
+			elements = Arrays.copyOf(elements, elements.length * 2);
+		elements[size++] = value;
+	}
+
+	public int pop() {
+		return elements[--size];
+	}
+
+	public int peek() {
+		return elements[size - 1];
+	}
+
+	// Element at position i, counted from the bottom of the stack
+	public int get(int i) {
+		return elements[i];
+	}
+
+	// Pops all but the bottom size elements at once
+	public void truncate(int size) {
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// Copies all elements, from the bottom of the stack, to destination
+	public void copyTo(int[] destination, int offset) {
+		System.arraycopy(elements, 0, destination, offset, size);
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public IntStack copy() {
+		return new IntStack(Arrays.copyOf(elements, Math.max(size, 1)), size);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * A grid compressed into a graph of its junctions: Every cell with more than
+ * two passages, plus start and end, is a node; every corridor between two
+ * nodes (a chain of cells with exactly two passages each) is an edge, with the
+ * number of steps along it as its length. Corridors ending in a dead end are
+ * left out, as no path from one node to another can use them. The edges are
+ * kept in compressed sparse row form: The edges of node n are the indices
+ * edgeStart[n] .. edgeStart[n + 1] - 1 of edgeTarget, edgeLength and
+ * edgeDirection, and each corridor appears once from either end. Searches
+ * thus take one step per corridor instead of one per cell, and expand() turns
+ * the corridors of the final path back into cells.
+ *
+ * Corridors are followed assuming two-way passages, as made by
+ * Grid.addPassage(). The graph does not change with the grid, so it must be
+ * rebuilt after the passages have changed (e.g. by a DeadEndFiller).
+ */
+
+import java.util.Arrays;
+
+public final class JunctionGraph {
+
+	public final Labyrinth.Grid grid;
+
+	// Cell index of each node, in ascending order
+	private final int[] nodeCells;
+	private final int[] edgeStart;
+	private final int[] edgeTarget; // node at the other end of the corridor
+	private final int[] edgeLength; // steps from node to target
+	private final byte[] edgeDirection; // ordinal of the first step's Direction
+
+	private JunctionGraph(Labyrinth.Grid grid, int[] nodeCells, int[] edgeStart, int[] edgeTarget, int[] edgeLength,
+			byte[] edgeDirection) {
+		this.grid = grid;
+		this.nodeCells = nodeCells;
+		this.edgeStart = edgeStart;
+		this.edgeTarget = edgeTarget;
+		this.edgeLength = edgeLength;
+		this.edgeDirection = edgeDirection;
+	}
+
+	/**
+	 * Builds the junction graph of grid, which must not have more than
+	 * Labyrinth.MAX_INT_INDEXED_CELLS cells.
+	 */
+	public static JunctionGraph build(Labyrinth.Grid grid) {
+		if (!grid.isIntIndexed())
+			throw new IllegalArgumentException("Grid with " + grid.cells() + " cells is too large for a JunctionGraph");
+		int cells = (int) grid.cells();
+		int start = grid.index(grid.start);
+		int end = grid.index(grid.end);
+
+		// First pass: count nodes and (an upper bound of) edges, so that the
+		// arrays need not grow
+		int nodes = 0;
+		int edges = 0;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (isNode(grid, cell, start, end)) {
+				++nodes;
+				edges += Integer.bitCount(grid.passages(cell));
+			}
+		}
+		int[] nodeCells = new int[nodes];
+		int[] edgeStart = new int[nodes + 1];
+		int[] edgeTarget = new int[edges];
+		int[] edgeLength = new int[edges];
+		byte[] edgeDirection = new byte[edges];
+		int node = 0;
+		for (int cell = 0; cell < cells; ++cell)
+			if (isNode(grid, cell, start, end))
+				nodeCells[node++] = cell;
+
+		// Second pass: follow each corridor from each node to its other end
+		int edge = 0;
+		for (node = 0; node < nodes; ++node) {
+			edgeStart[node] = edge;
+			int cell = nodeCells[node];
+			for (Direction dir : Direction.VALUES) {
+				if (!grid.hasPassage(cell, dir))
+					continue;
+				int length = 1;
+				int current = grid.neighbor(cell, dir);
+				Direction cameFrom = dir.opposite;
+				while (isCorridor(grid, current, start, end)) {
+					Direction onward = onward(grid, current, cameFrom);
+					current = grid.neighbor(current, onward);
+					cameFrom = onward.opposite;
+					++length;
+				}
+				if (!isNode(grid, current, start, end))
+					continue; // dead end
+				edgeTarget[edge] = Arrays.binarySearch(nodeCells, current);
+				edgeLength[edge] = length;
+				edgeDirection[edge] = (byte) dir.ordinal();
+				++edge;
+			}
+		}
+		edgeStart[nodes] = edge;
+		edgeTarget = Arrays.copyOf(edgeTarget, edge);
+		edgeLength = Arrays.copyOf(edgeLength, edge);
+		edgeDirection = Arrays.copyOf(edgeDirection, edge);
+		return new JunctionGraph(grid, nodeCells, edgeStart, edgeTarget, edgeLength, edgeDirection);
+	}
+
+	private static boolean isNode(Labyrinth.Grid grid, int cell, int start, int end) {
+		return Integer.bitCount(grid.passages(cell)) > 2 || cell == start || cell == end;
+	}
+
+	private static boolean isCorridor(Labyrinth.Grid grid, int cell, int start, int end) {
+		return Integer.bitCount(grid.passages(cell)) == 2 && cell != start && cell != end;
+	}
+
+	// The other passage of a corridor cell, entered from direction cameFrom
+	private static Direction onward(Labyrinth.Grid grid, int cell, Direction cameFrom) {
+		return Direction.VALUES[Integer.numberOfTrailingZeros(grid.passages(cell) & ~cameFrom.bit)];
+	}
+
+	public int nodes() {
+		return nodeCells.length;
+	}
+
+	public int edges() {
+		return edgeTarget.length;
+	}
+
+	public int cell(int node) {
+		return nodeCells[node];
+	}
+
+	/**
+	 * @return The node at the given cell index, or -1 if that cell lies
+	 *         within a corridor or is a dead end
+	 */
+	public int node(int cell) {
+		int node = Arrays.binarySearch(nodeCells, cell);
+		return node >= 0 ? node : -1;
+	}
+
+	public int firstEdge(int node) {
+		return edgeStart[node];
+	}
+
+	// exclusive
+	public int endEdge(int node) {
+		return edgeStart[node + 1];
+	}
+
+	public int target(int edge) {
+		return edgeTarget[edge];
+	}
+
+	public int length(int edge) {
+		return edgeLength[edge];
+	}
+
+	/**
+	 * Pushes the cells along edge, which starts at node, onto path: all
+	 * cells after the node up to and including the node at the other end.
+	 */
+	public void expand(int node, int edge, IntStack path) {
+		int cell = nodeCells[node];
+		Direction dir = Direction.VALUES[edgeDirection[edge]];
+		for (int step = edgeLength[edge]; step > 0; --step) {
+			cell = grid.neighbor(cell, dir);
+			path.push(cell);
+			if (step > 1)
+				dir = onward(grid, cell, dir.opposite);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Depth-first search on the JunctionGraph of the labyrinth instead of its
+ * cells: Only junctions and dead ends are visited, and whole corridors are
+ * crossed in one step. The graph is built on the first solve() of a grid and
+ * reused by later ones on the same grid.
+ */
+public class JunctionGraphSolver implements LabyrinthSolver {
+
+	private JunctionGraph graph;
+
+	// For each node visited by the search: the node and edge it was reached by
+	private int[] parentNode;
+	private int[] parentEdge;
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		if (this.graph == null || this.graph.grid != lab.grid) {
+			this.graph = JunctionGraph.build(lab.grid);
+			this.parentNode = new int[this.graph.nodes()];
+			this.parentEdge = new int[this.graph.nodes()];
+		}
+		Labyrinth.Grid grid = lab.grid;
+		int startNode = this.graph.node(grid.index(grid.start));
+		int endNode = this.graph.node(grid.index(grid.end));
+
+		// Visited state is kept by the node's cell in the labyrinth
+		IntStack nodesToDo = new IntStack();
+		SolverStats.Counts counts = new SolverStats.Counts(); // junctions count as cells
+		lab.visit(this.graph.cell(startNode));
+		counts.cellsVisited++;
+		nodesToDo.push(startNode);
+		boolean found = false;
+		while (!nodesToDo.isEmpty()) {
+			int node = nodesToDo.pop();
+			if (node == endNode) {
+				found = true;
+				break;
+			}
+			for (int edge = this.graph.firstEdge(node); edge < this.graph.endEdge(node); ++edge) {
+				int target = this.graph.target(edge);
+				if (lab.tryVisit(this.graph.cell(target))) {
+					counts.cellsVisited++;
+					this.parentNode[target] = node;
+					this.parentEdge[target] = edge;
+					nodesToDo.push(target);
+				}
+			}
+		}
+		lab.stats.add(counts);
+		if (!found)
+			return null;
+
+		// Nodes on the path from end back to start ...
+		IntStack nodesBack = new IntStack();
+		for (int node = endNode; node != startNode; node = this.parentNode[node])
+			nodesBack.push(node);
+		// ... with the corridors between them expanded into cells:
+		IntStack path = new IntStack();
+		path.push(this.graph.cell(startNode));
+		while (!nodesBack.isEmpty()) {
+			int node = nodesBack.pop();
+			this.graph.expand(this.parentNode[node], this.parentEdge[node], path);
+		}
+		return grid.toPoints(path);
+	}
+
+}
@@ -3,15 +3,19 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayDeque;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -39,9 +43,9 @@ final public class Labyrinth extends JPanel {
 		public final Point start;
 		public final Point end;
 
-		final byte[][] passages;
+		final PassageStore passages;
 		/*
-		 * Each array element represents a cell in the labyrinth with the
+		 * Each element represents a cell in the labyrinth with the
 		 * passages possible from this cell. Its four least significant bits are
 		 * interpreted as one flag for each direction (see enum Direction for
 		 * which bit means which direction) indicating whether there is a
@@ -52,16 +56,176 @@ final public class Labyrinth extends JPanel {
 		 * passages appear as opposite bits in both the source and destination
 		 * cell; thus, this data structure supports one-way passages, too, by
 		 * setting a bit in the source cell only.
+		 * The cells are stored row by row, i.e. cell (x, y) has the index
+		 * y * width + x (see index()), either on the heap or in a mapped grid
+		 * file (see PassageStore). The solvers work on these indices only and
+		 * create Points just for the final solution path.
 		 */
 
+		// Used by readObject() to hand the deserialized grid to readResolve()
+		private transient Grid deserialized;
+
+		// Keep the serialized form of the original byte[width][height] layout,
+		// so that existing .ser files remain readable:
+		private static final ObjectStreamField[] serialPersistentFields = {
+				new ObjectStreamField("width", int.class), new ObjectStreamField("height", int.class),
+				new ObjectStreamField("start", Point.class), new ObjectStreamField("end", Point.class),
+				new ObjectStreamField("passages", byte[][].class) };
+
 		public Grid(int width, int height, Point start, Point end) {
+			// initially all 0 (see comment at declaration of passages)
+			this(width, height, start, end, newPassageStore((long) width * height));
+		}
+
+		public Grid(int width, int height, Point start, Point end, PassageStore passages) {
 			this.width = width;
 			this.height = height;
 			this.start = start;
 			this.end = end;
+			this.passages = passages;
+		}
+
+		// On the heap if a Java array can hold all cells, else off-heap
+		static PassageStore newPassageStore(long cells) {
+			return cells <= MAX_INT_INDEXED_CELLS ? new HeapPassageStore((int) cells) : new OffHeapPassageStore(cells);
+		}
+
+		public long cells() {
+			return (long) width * height;
+		}
+
+		/*
+		 * Cell indices are ints where this is enough, i.e. for grids with at
+		 * most MAX_INT_INDEXED_CELLS cells (as needed by the solvers), and
+		 * longs otherwise: index() and neighbor(int, Direction) are for the
+		 * former, cellIndex() and neighbor(long, Direction) work for all grids.
+		 * All other methods taking an index accept both.
+		 */
+
+		public boolean isIntIndexed() {
+			return cells() <= MAX_INT_INDEXED_CELLS;
+		}
+
+		public int index(int x, int y) {
+			return y * width + x;
+		}
+
+		public int index(Point p) {
+			return index(p.x, p.y);
+		}
+
+		public long cellIndex(int x, int y) {
+			return (long) y * width + x;
+		}
+
+		public int x(long index) {
+			return (int) (index % width);
+		}
+
+		public int y(long index) {
+			return (int) (index / width);
+		}
+
+		public Point point(long index) {
+			return new Point(x(index), y(index));
+		}
+
+		public int passages(long index) {
+			return passages.get(index);
+		}
+
+		public boolean hasPassage(long index, Direction dir) {
+			return (passages.get(index) & dir.bit) != 0;
+		}
+
+		private boolean contains(Point p) {
+			return 0 <= p.getX() && p.getX() < width && 0 <= p.getY() && p.getY() < height;
+		}
+
+		public boolean hasPassage(Point from, Point to) {
+			if (!contains(from) || !contains(to)) {
+				return false;
+			}
+			for (Direction dir : Direction.VALUES) {
+				if (from.x + dir.dx == to.x && from.y + dir.dy == to.y)
+					return hasPassage(cellIndex(from.x, from.y), dir);
+			}
+			return false; // to is not a neighbor of from
+		}
+
+		/**
+		 * Makes a two-way passage, i.e. from the cell at index to its neighbor
+		 * in direction dir and from that neighbor back to the cell.
+		 */
+		public void addPassage(long index, Direction dir) {
+			long neighbor = neighbor(index, dir);
+			passages.set(index, passages.get(index) | dir.bit);
+			passages.set(neighbor, passages.get(neighbor) | dir.opposite.bit);
+		}
+
+		/**
+		 * @return The index of the neighbor of the cell at index in direction
+		 *         dir. This is only meaningful if that neighbor lies within
+		 *         the labyrinth, which is always the case if
+		 *         hasPassage(index, dir) holds.
+		 */
+		public int neighbor(int index, Direction dir) {
+			return index + dir.dy * width + dir.dx;
+		}
+
+		public long neighbor(long index, Direction dir) {
+			return index + (long) dir.dy * width + dir.dx;
+		}
+
+		/**
+		 * @return A grid with the same size, start, end and passages as this
+		 *         one, but with its own passages (on the heap if possible, see
+		 *         newPassageStore()), e.g. to be pruned by a DeadEndFiller
+		 */
+		public Grid copy() {
+			Grid copy = new Grid(width, height, start, end);
+			for (long i = 0; i < cells(); ++i)
+				copy.passages.set(i, passages.get(i));
+			return copy;
+		}
 
-			passages = new byte[width][height]; // initially all 0 (see comment
-												// at declaration of passages)
+		/**
+		 * @return The cells with the given indices as Points, in the same order
+		 */
+		public Point[] toPoints(IntStack cells) {
+			Point[] points = new Point[cells.size()];
+			for (int i = 0; i < points.length; ++i)
+				points[i] = point(cells.get(i));
+			return points;
+		}
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			byte[][] columns = new byte[width][height];
+			for (int x = 0; x < width; ++x)
+				for (int y = 0; y < height; ++y)
+					columns[x][y] = (byte) passages(index(x, y));
+			ObjectOutputStream.PutField fields = out.putFields();
+			fields.put("width", width);
+			fields.put("height", height);
+			fields.put("start", start);
+			fields.put("end", end);
+			fields.put("passages", columns);
+			out.writeFields();
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			ObjectInputStream.GetField fields = in.readFields();
+			Grid grid = new Grid(fields.get("width", 0), fields.get("height", 0), (Point) fields.get("start", null),
+					(Point) fields.get("end", null));
+			byte[][] columns = (byte[][]) fields.get("passages", null);
+			for (int x = 0; x < grid.width; ++x)
+				for (int y = 0; y < grid.height; ++y)
+					grid.passages.set(grid.index(x, y), columns[x][y]);
+			deserialized = grid;
+		}
+
+		private Object readResolve() {
+			return deserialized;
 		}
 	}
 
@@ -76,114 +240,154 @@ final public class Labyrinth extends JPanel {
 	// to some neighbor cell, create a
 	// passage to a cell already that is accessible on another path (i.e. create
 	// a cycle) with this probability:
-	private static final double CYCLE_CREATION_PROBABILITY = 0.01;
+	static final double CYCLE_CREATION_PROBABILITY = 0.01;
 
 	// The default size of the labyrinth (i.e. unless program is invoked with
 	// size arguments):
 	private static final int DEFAULT_WIDTH_IN_CELLS = 5000;
 	private static final int DEFAULT_HEIGHT_IN_CELLS = 5000;
 
+	// The solvers address cells by int (see Grid.index()), and Java arrays
+	// cannot be larger, so they are limited to grids with this many cells:
+	static final long MAX_INT_INDEXED_CELLS = Integer.MAX_VALUE - 8;
+
 	public final Grid grid;
 
-	// For each cell in the labyrinth: Has solve() visited it yet?
-	private final boolean[][] visited;
+	// For each cell in the labyrinth (by slot(), see there): Has solve()
+	// visited it yet? Shared by all solvers and reset at the start of every
+	// solve(); null if the grid is too large for the solvers
+	private final ConcurrentBitSet visited;
+
+	// For each cell visited by tryVisit(cell, from) (by slot()): the direction
+	// back to the cell it was reached from. As each cell is visited once, this
+	// shares the path from start among all searches that continue from a cell,
+	// so they fork without copying any path (see pathTo()).
+	private final CellDirections cameFrom;
+
+	// The layout of visited and cameFrom if tiled, else null (by index)
+	private final TiledCells tiles;
+
+	// What the solver did during the latest solve()
+	public final SolverStats stats = new SolverStats();
 
 	private Point[] solution = null; // set to solution path once that has been
 										// computed
 
+	/**
+	 * Wraps an existing grid, e.g. one loaded from a file or generated by a
+	 * LabyrinthGenerator. The grid is not changed.
+	 */
 	public Labyrinth(Grid grid) {
+		this(grid, false);
+	}
+
+	/**
+	 * Like Labyrinth(grid), but with tiledVisited, the search state is laid
+	 * out in tiles of cells (see TiledCells), so that threads searching
+	 * neighboring regions write to different cache lines.
+	 */
+	public Labyrinth(Grid grid, boolean tiledVisited) {
 		this.grid = grid;
-		visited = new boolean[grid.width][grid.height]; // initially all false
-		generate();
+		tiles = tiledVisited && grid.isIntIndexed() ? new TiledCells(grid.width, grid.height) : null;
+		int slots = tiles != null ? tiles.size() : (int) grid.cells();
+		// initially all false
+		visited = grid.isIntIndexed() ? new ConcurrentBitSet(slots) : null;
+		cameFrom = grid.isIntIndexed() ? new CellDirections(slots) : null;
 	}
 
+	/**
+	 * Creates a new, random labyrinth (with or without cycles, depending on
+	 * CYCLE_CREATION_PROBABILITY).
+	 */
 	public Labyrinth(int width, int height, Point start, Point end) {
-		this(new Grid(width, height, start, end));
+		this(width, height, start, end, new Random().nextLong());
 	}
 
 	/**
-	 * Generate a labyrinth (with or without cycles, depending on
-	 * CYCLE_CREATION_PROBABILITY) using the depth-first algorithm
-	 * (www.astrolog.org/labyrnth/algrithm.htm (sic!))
+	 * Like Labyrinth(width, height, start, end), but reproducible: The same
+	 * seed always creates the same labyrinth.
 	 */
+	public Labyrinth(int width, int height, Point start, Point end, long seed) {
+		this(new Grid(width, height, start, end));
+		LabyrinthGenerator generator = new LabyrinthGenerator(seed, CYCLE_CREATION_PROBABILITY);
+		if (grid.isIntIndexed())
+			generator.generate(grid);
+		else
+			generator.generateParallel(grid, Runtime.getRuntime().availableProcessors());
+	}
 
-	private void generate() {
-		ArrayDeque<Point> pointsToDo = new ArrayDeque<Point>();
-		Point current;
-		pointsToDo.push(grid.start);
-		while (!pointsToDo.isEmpty()) {
-			current = pointsToDo.pop();
-			int cx = current.getX();
-			int cy = current.getY();
-			Direction[] dirs = Direction.values();
-			Collections.shuffle(Arrays.asList(dirs));
-			// For all unvisited neighboring cells in random order:
-			// Make a passage from the current cell to that neighbor
-			for (Direction dir : dirs) {
-				// Pick random neighbor of current cell as new cell (nx, ny)
-				Point neighbor = current.getNeighbor(dir);
-				int nx = neighbor.getX();
-				int ny = neighbor.getY();
-
-				if (contains(neighbor) // If neighbor is still in the labyrinth
-										// ...
-						&& (grid.passages[nx][ny] == 0 // ... and has no passage
-														// yet, i.e. has not
-														// been visited yet
-														// during generation
-								|| Math.random() < CYCLE_CREATION_PROBABILITY)) { // ...
-																					// or
-																					// creating
-																					// a
-																					// cycle
-																					// is
-																					// OK
-
-					// Make a two-way passage, i.e. from current to neighbor and
-					// from neighbor to current:
-					grid.passages[cx][cy] |= dir.bit;
-					grid.passages[nx][ny] |= dir.opposite.bit;
-
-					// Remember to continue from this neighbor later on
-					pointsToDo.push(neighbor);
-				}
-			}
-		}
+	public boolean hasPassage(Point from, Point to) {
+		return grid.hasPassage(from, to);
 	}
 
-	private boolean contains(Point p) {
-		return 0 <= p.getX() && p.getX() < grid.width && 0 <= p.getY() && p.getY() < grid.height;
+	// Where the search state of cell is kept in visited and cameFrom
+	private int slot(int cell) {
+		return tiles == null ? cell : tiles.position(cell);
 	}
 
-	public boolean hasPassage(Point from, Point to) {
-		if (!contains(from) || !contains(to)) {
+	public boolean visitedBefore(int cell) {
+		return visited.get(slot(cell));
+	}
+
+	public void visit(int cell) {
+		visited.set(slot(cell));
+	}
+
+	/**
+	 * Marks cell as visited; safe to be called by several threads at once.
+	 * 
+	 * @return true if the calling thread is the first to visit cell
+	 */
+	public boolean tryVisit(int cell) {
+		return visited.trySet(slot(cell));
+	}
+
+	/**
+	 * Like tryVisit(cell), but also records that cell was reached from its
+	 * neighbor in direction from (null for start) if this is the first visit.
+	 */
+	public boolean tryVisit(int cell, Direction from) {
+		int slot = slot(cell);
+		if (!visited.trySet(slot))
 			return false;
+		if (from != null)
+			cameFrom.set(slot, from);
+		return true;
+	}
+
+	/**
+	 * @return The path from start to cell, following the directions recorded
+	 *         by tryVisit(cell, from) back from cell. The thread calling this
+	 *         must have visited cell, or have been handed it (e.g. by forking)
+	 *         by the thread that did.
+	 */
+	public Point[] pathTo(int cell) {
+		int start = grid.index(grid.start);
+		int length = 1;
+		for (int c = cell; c != start; c = grid.neighbor(c, cameFrom.get(slot(c))))
+			++length;
+		Point[] path = new Point[length];
+		int c = cell;
+		for (int i = length - 1; i > 0; --i) {
+			path[i] = grid.point(c);
+			c = grid.neighbor(c, cameFrom.get(slot(c)));
 		}
-		if (from.getNeighbor(Direction.N).equals(to))
-			return (grid.passages[from.getX()][from.getY()] & Direction.N.bit) != 0;
-		if (from.getNeighbor(Direction.S).equals(to))
-			return (grid.passages[from.getX()][from.getY()] & Direction.S.bit) != 0;
-		if (from.getNeighbor(Direction.E).equals(to))
-			return (grid.passages[from.getX()][from.getY()] & Direction.E.bit) != 0;
-		if (from.getNeighbor(Direction.W).equals(to))
-			return (grid.passages[from.getX()][from.getY()] & Direction.W.bit) != 0;
-		return false; // To suppress warning about undefined return value
+		path[0] = grid.point(c);
+		return path;
 	}
 
-	public boolean visitedBefore(Point p) {
-		boolean result = visited[p.getX()][p.getY()];
-		// DEBUG
-		// if (result)
-		// System.out.println("Node " + p + " already visited.");
-		return result;
+	private boolean checkSolution() {
+		return checkSolution(solution);
 	}
 
-	public void visit(Point p) {
-		// DEBUG System.out.println("Visiting " + p);
-		visited[p.getX()][p.getY()] = true;
+	// Whether solution is a path through this labyrinth from start to end
+	boolean checkSolution(Point[] solution) {
+		return checkSolution(grid, solution);
 	}
 
-	private boolean checkSolution() {
+	// Whether solution is a path through grid from start to end, for grids
+	// of any size (no Labyrinth needed)
+	static boolean checkSolution(Grid grid, Point[] solution) {
 		Point from = solution[0];
 		if (!from.equals(grid.start)) {
 			System.out.println("checkSolution fails because the first cell is" + from + ", but not  " + grid.start);
@@ -192,7 +396,7 @@ final public class Labyrinth extends JPanel {
 
 		for (int i = 1; i < solution.length; ++i) {
 			Point to = solution[i];
-			if (!hasPassage(from, to)) {
+			if (!grid.hasPassage(from, to)) {
 				System.out.println("checkSolution fails because there is no passage from " + from + " to " + to);
 				return false;
 			}
@@ -210,7 +414,38 @@ final public class Labyrinth extends JPanel {
 	 *         array, or null if no solution exists
 	 */
 	public Point[] solve(LabyrinthSolver labsolver) {
-		return labsolver.solve(this);
+		prepareSolve(labsolver);
+		try {
+			return labsolver.solve(this);
+		} finally {
+			stats.stop();
+		}
+	}
+
+	/**
+	 * Like solve(), but returns as soon as the solve has started, so that one
+	 * thread can have several labyrinths solved at once. This labyrinth must
+	 * not be solved again before the future has completed.
+	 *
+	 * @return A future completed with a path through the labyrinth from start
+	 *         to end, or with null if no solution exists
+	 */
+	public CompletableFuture<Point[]> solveAsync(LimitedParallelSolver labsolver) {
+		prepareSolve(labsolver);
+		return labsolver.solveAsync(this).whenComplete(new BiConsumer<Point[], Throwable>() {
+			@Override
+			public void accept(Point[] path, Throwable failure) {
+				stats.stop();
+			}
+		});
+	}
+
+	private void prepareSolve(LabyrinthSolver labsolver) {
+		if (visited == null)
+			throw new IllegalStateException("Cannot solve a labyrinth with more than " + MAX_INT_INDEXED_CELLS
+					+ " cells, this one has " + grid.cells());
+		visited.clear(); // forget about cells visited by a previous solve()
+		stats.start(labsolver);
 	}
 
 	@Override
@@ -223,12 +458,12 @@ final public class Labyrinth extends JPanel {
 		for (int i = 0; i < grid.height; i++) {
 			// draw the north edges
 			for (int j = 0; j < grid.width; j++) {
-				System.out.print((grid.passages[j][i] & Direction.N.bit) == 0 ? "+---" : "+   ");
+				System.out.print(grid.hasPassage(grid.index(j, i), Direction.N) ? "+   " : "+---");
 			}
 			System.out.println("+");
 			// draw the west edges
 			for (int j = 0; j < grid.width; j++) {
-				System.out.print((grid.passages[j][i] & Direction.W.bit) == 0 ? "|   " : "    ");
+				System.out.print(grid.hasPassage(grid.index(j, i), Direction.W) ? "    " : "|   ");
 			}
 			// draw the far east edge
 			System.out.println("|");
@@ -275,7 +510,7 @@ final public class Labyrinth extends JPanel {
 			for (int y = 0; y < grid.height; ++y) {
 				// draw north edge of each cell (together with south edge of
 				// cell above)
-				if ((grid.passages[x][y] & Direction.N.bit) == 0)
+				if (!grid.hasPassage(grid.index(x, y), Direction.N))
 					// y-HALF_WALL_PX will be half out of labyrinth for x==0
 					// row,
 					// but that does not hurt the picture thanks to automatic
@@ -283,7 +518,7 @@ final public class Labyrinth extends JPanel {
 					graphics.fillRect(x * CELL_PX, y * CELL_PX - HALF_WALL_PX, CELL_PX, 2 * HALF_WALL_PX);
 				// draw west edge of each cell (together with east edge of cell
 				// to the left)
-				if ((grid.passages[x][y] & Direction.W.bit) == 0)
+				if (!grid.hasPassage(grid.index(x, y), Direction.W))
 					// x-HALF_WALL_PX will be half out of labyrinth for y==0
 					// column,
 					// but that does not hurt the picture thanks to automatic
@@ -308,19 +543,42 @@ final public class Labyrinth extends JPanel {
 		repaint();
 	}
 
+	// Legacy import of a grid serialized to a .ser file (see GridFile for the
+	// current file format)
+	static Grid loadGrid(String fileName) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName))) {
+			return (Grid) ois.readObject();
+		}
+	}
+
+	static void saveGrid(Grid grid, String fileName) throws IOException {
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fileName))) {
+			oos.writeObject(grid);
+		}
+	}
+
 	private static Labyrinth makeAndSaveLabyrinth(String[] args) {
 
 		// Construct labyrinth: Either read it from a file, or create a new one
-		if (args.length >= 1 && args[0].endsWith(".ser")) {
+		if (args.length >= 1 && args[0].endsWith(GridFile.EXTENSION)) {
+
+			// 1st argument is name of grid file: Ignore other arguments
+			// and create labyrinth from that file (mapped, not read):
+			try {
+				Grid grid = GridFile.map(Paths.get(args[0]));
+				Labyrinth labyrinth = new Labyrinth(grid);
+				return labyrinth;
+			} catch (Exception e) {
+				System.out.println(e);
+				return null;
+			}
+		} else if (args.length >= 1 && args[0].endsWith(".ser")) {
 
 			// 1st argument is name of file with serialized labyrinth: Ignore
 			// other arguments
 			// and create labyrinth from that file:
-			ObjectInputStream ois;
 			try {
-				ois = new ObjectInputStream(new FileInputStream(args[0]));
-				Grid grid = (Grid) ois.readObject();
-				ois.close();
+				Grid grid = loadGrid(args[0]);
 				Labyrinth labyrinth = new Labyrinth(grid);
 				return labyrinth;
 			} catch (Exception e) {
@@ -332,20 +590,21 @@ final public class Labyrinth extends JPanel {
 
 			int width = args.length >= 1 ? (Integer.parseInt(args[0])) : DEFAULT_WIDTH_IN_CELLS;
 			int height = args.length >= 2 ? (Integer.parseInt(args[1])) : DEFAULT_HEIGHT_IN_CELLS;
+			long seed = args.length >= 3 ? Long.parseLong(args[2]) : new Random().nextLong();
+			System.out.println("Labyrinth seed: " + seed);
+			Random random = new Random(seed);
 
 			Point start = new Point(width / 2, height / 2);
 
 			// Randomly pick one of the four corners as the end point:
-			int zeroToThree = (int) (4.0 * Math.random());
+			int zeroToThree = random.nextInt(4);
 			Point end = new Point(zeroToThree / 2 == 0 ? 0 : width - 1, zeroToThree % 2 == 0 ? 0 : height - 1);
 
-			Labyrinth labyrinth = new Labyrinth(width, height, start, end);
+			Labyrinth labyrinth = new Labyrinth(width, height, start, end, random.nextLong());
 
 			// Save to file (may be reused in future program executions):
 			try {
-				ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("grid.ser"));
-				oos.writeObject(labyrinth.grid);
-				oos.close();
+				GridFile.write(labyrinth.grid, Paths.get("grid" + GridFile.EXTENSION));
 			} catch (Exception e) {
 				System.out.println(e);
 			}
@@ -357,15 +616,20 @@ final public class Labyrinth extends JPanel {
 	/**
 	 * 
 	 * @param args
-	 *            If the first argument is a file name ending in .ser, the
-	 *            serialized labyrinth in that file is used; else the first two
+	 *            If the first argument is a file name ending in .lab (see
+	 *            GridFile) or .ser (legacy serialized format), the labyrinth
+	 *            in that file is used; else the first two
 	 *            arguments are optional numbers giving the width and height of
-	 *            a new labyrinth to be constructed.
+	 *            a new labyrinth to be constructed, and the optional third
+	 *            argument is the seed to construct it from (a random seed is
+	 *            used and printed otherwise).
 	 */
 	public static void main(String[] args) {
 		JFrame frame = null;
 		Labyrinth labyrinth = makeAndSaveLabyrinth(args);
 		System.out.println("Labyrinth dimensions: " + labyrinth.grid.width + "x" + labyrinth.grid.height);
+		// Watch the solves live, e.g. with jconsole
+		labyrinth.stats.register("main");
 		int solveType = getCorrectSolveType();
 		int solveNumber;
 		if(solveType != 1) {
@@ -374,22 +638,34 @@ final public class Labyrinth extends JPanel {
 			solveNumber = 1;
 		}
 		ArrayList<Long> times = new ArrayList<Long>();
+		// Build the right solver, once for all solves.
+		LabyrinthSolver solver = null;
+		if (solveType == 1) {
+			solver = new NonParallelSolver();
+		} else if (solveType == 2) {
+			solver = new LimitedParallelSolver();
+		} else if (solveType == 3) {
+			solver = new MultithreadBasedSolver();
+		} else if (solveType == 4) {
+			solver = new BidirectionalSolver();
+		} else if (solveType == 5) {
+			solver = new ParallelBFSSolver();
+		} else if (solveType == 6) {
+			solver = new JunctionGraphSolver();
+		} else if (solveType == 7) {
+			solver = new AdaptiveParallelSolver();
+		} else if (solveType == 8) {
+			solver = new TileOwnershipSolver();
+		} else if (solveType == 9) {
+			solver = new DistributedSolver(gridFileOf(labyrinth, args));
+		} else if (solveType == 10) {
+			solver = new StreamingSolver();
+		}
+		// Start the threads of the solver once, too (see SolverEngine)
+		if (solver instanceof SolverEngine)
+			((SolverEngine) solver).open();
 		// Repeat for every Labyrinth being solved.
 		for (int i = 1; i <= solveNumber; i++) {
-			// Build the right solver.
-			LabyrinthSolver solver = null;
-			if (solveType == 1) {
-				NonParallelSolver p = new NonParallelSolver();
-				solver = p;
-			} else if (solveType == 2) {
-				LimitedParallelSolver p = new LimitedParallelSolver();
-				p.initializeDatastructure(labyrinth);
-				solver = p;
-			} else if (solveType == 3) {
-				MultithreadBasedSolver p = new MultithreadBasedSolver();
-				p.initializeDatastructure(labyrinth);
-				solver = p;
-			}
 			/**
 			 * if (labyrinth.smallEnoughToDisplay()) { frame = new JFrame(
 			 * "Sequential labyrinth solver");
@@ -441,6 +717,27 @@ final public class Labyrinth extends JPanel {
 				case 3: 
 					solveTypeString = "Multithread-based parallel";
 					break;
+				case 4:
+					solveTypeString = "bidirectional parallel";
+					break;
+				case 5:
+					solveTypeString = "breadth-first parallel";
+					break;
+				case 6:
+					solveTypeString = "junction graph";
+					break;
+				case 7:
+					solveTypeString = "adaptive ForkJoinPool-based parallel";
+					break;
+				case 8:
+					solveTypeString = "tile ownership parallel";
+					break;
+				case 9:
+					solveTypeString = "multi-process distributed";
+					break;
+				case 10:
+					solveTypeString = "streaming row by row";
+					break;
 				default: 
 					solveTypeString = "unknown Type";	
 					break;	
@@ -463,6 +760,7 @@ final public class Labyrinth extends JPanel {
 			System.out.println("Computed " + solveTypeString + "solution of the " + i + solveNumberString + " Labyrinth of length " + labyrinth.solution.length
 					+ " to labyrinth of size " + labyrinth.grid.width + "x" + labyrinth.grid.height + " in "
 					+ (endTime - startTime) + "ms.");
+			System.out.println(labyrinth.stats.toJson());
 
 			/**if (labyrinth.smallEnoughToDisplay()) {
 				labyrinth.displaySolution(frame);
@@ -475,6 +773,8 @@ final public class Labyrinth extends JPanel {
 				System.out.println("Solution incorrect :-(");
 			System.gc();
 		}
+		if (solver instanceof SolverEngine)
+			((SolverEngine) solver).close();
 		times.sort(new Comparator<Long>() {
 
 			@Override
@@ -485,6 +785,23 @@ final public class Labyrinth extends JPanel {
 		System.out.println("The median of this attempt is " + getMedian(times) + "ms!");
 	}
 
+	// The grid file of labyrinth, for solvers in other processes: the file
+	// given, else the one saved by makeAndSaveLabyrinth() (written now for a
+	// labyrinth from a .ser file)
+	private static Path gridFileOf(Labyrinth labyrinth, String[] args) {
+		if (args.length >= 1 && args[0].endsWith(GridFile.EXTENSION))
+			return Paths.get(args[0]);
+		Path file = Paths.get("grid" + GridFile.EXTENSION);
+		if (args.length >= 1 && args[0].endsWith(".ser")) {
+			try {
+				GridFile.write(labyrinth.grid, file);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot write " + file, e);
+			}
+		}
+		return file;
+	}
+
 	private static long getMedian(ArrayList<Long> times) {
 		int size = times.size();
 		int lowerHalf = Math.round(size/2);
@@ -524,19 +841,33 @@ final public class Labyrinth extends JPanel {
 		Scanner scanner = new Scanner(System.in);
 		int solveType;
 		do {
-			System.out.println("How do you like your labyrinth be solved?\n\t1 - sequential\n\t2 - parallel with ForkJoinTasks\n\t3 - parallel with multithreads");
+			System.out.println("How do you like your labyrinth be solved?\n\t1 - sequential\n\t2 - parallel with ForkJoinTasks\n\t3 - parallel with multithreads\n\t4 - bidirectional, from start and end at once\n\t5 - parallel breadth-first, shortest path\n\t6 - sequential on the graph of junctions\n\t7 - parallel with adaptively forked ForkJoinTasks\n\t8 - parallel with tiles of the labyrinth owned by threads\n\t9 - distributed over several processes\n\t10 - sequential, streaming the labyrinth row by row");
 			while (!scanner.hasNextInt()) {
 				System.out.println("Not a number! Try again!");
 				scanner.next();
 			}
 			solveType = scanner.nextInt();
-		} while(solveType<1 && solveType>3);
+		} while(solveType<1 || solveType>10);
 		if(solveType==1) {
 			System.out.println("You have choose the sequential solving method!");
 		} else if(solveType==2) {
 			System.out.println("You have choose the ForkJoinTask-based parallel solving method!");
 		} else if(solveType==3) {
 			System.out.println("You have choose the Multithread-based parallel solving method!");
+		} else if(solveType==4) {
+			System.out.println("You have choose the bidirectional solving method!");
+		} else if(solveType==5) {
+			System.out.println("You have choose the breadth-first parallel solving method!");
+		} else if(solveType==6) {
+			System.out.println("You have choose the junction graph solving method!");
+		} else if(solveType==7) {
+			System.out.println("You have choose the adaptive ForkJoinTask-based parallel solving method!");
+		} else if(solveType==8) {
+			System.out.println("You have choose the tile ownership parallel solving method!");
+		} else if(solveType==9) {
+			System.out.println("You have choose the distributed multi-process solving method!");
+		} else if(solveType==10) {
+			System.out.println("You have choose the streaming solving method!");
 		}
 		return solveType;
 	}
@@ -0,0 +1,204 @@
+/*
+ * Generates the passages of a Labyrinth.Grid (with or without cycles,
+ * depending on the cycle creation probability) reproducibly: the same seed
+ * always yields the same labyrinth.
+ *
+ * generate() uses the depth-first algorithm
+ * (www.astrolog.org/labyrnth/algrithm.htm (sic!)) on the whole grid.
+ * generateParallel() splits the grid into square tiles of TILE_SIZE cells,
+ * generates each tile with the same algorithm on its own core, and then
+ * stitches the tiles together along a random spanning tree of the tiles. The
+ * two methods produce different labyrinths for the same seed, but the result
+ * of generateParallel() does not depend on the number of threads.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class LabyrinthGenerator {
+
+	// Width and height of the tiles of generateParallel() in cells. This is
+	// deliberately not derived from the number of threads (see above).
+	static final int TILE_SIZE = 256;
+
+	// All 24 orders of the four directions: Picking one of them at random
+	// shuffles the directions without allocating anything.
+	private static final Direction[][] PERMUTATIONS = permutations();
+
+	private final long seed;
+	private final double cycleCreationProbability;
+
+	public LabyrinthGenerator(long seed, double cycleCreationProbability) {
+		this.seed = seed;
+		this.cycleCreationProbability = cycleCreationProbability;
+	}
+
+	/**
+	 * Generates passages in the whole grid, starting at grid.start. All cells
+	 * of grid must still be without passages, and grid must not have more
+	 * than Labyrinth.MAX_INT_INDEXED_CELLS cells (see generateParallel() for
+	 * larger grids).
+	 */
+	public void generate(Labyrinth.Grid grid) {
+		if (!grid.isIntIndexed())
+			throw new IllegalArgumentException("Grid with " + grid.cells() + " cells is too large for generate()");
+		generateRegion(grid, 0, 0, grid.width, grid.height, grid.start.x, grid.start.y, new SplittableRandom(seed));
+	}
+
+	/**
+	 * Like generate(), but generates the tiles of the grid in parallel on the
+	 * given number of threads. Grids of any size are supported, as each tile
+	 * only needs memory for its own TILE_SIZE * TILE_SIZE cells.
+	 */
+	public void generateParallel(Labyrinth.Grid grid, int threads) {
+		int tilesX = (grid.width + TILE_SIZE - 1) / TILE_SIZE;
+		int tilesY = (grid.height + TILE_SIZE - 1) / TILE_SIZE;
+		SplittableRandom random = new SplittableRandom(seed);
+
+		// Split off the random generators of all tiles in a fixed order,
+		// independent of which thread will generate which tile:
+		List<Callable<Void>> tiles = new ArrayList<Callable<Void>>(tilesX * tilesY);
+		for (int tileY = 0; tileY < tilesY; ++tileY) {
+			for (int tileX = 0; tileX < tilesX; ++tileX) {
+				final int x0 = tileX * TILE_SIZE;
+				final int y0 = tileY * TILE_SIZE;
+				final int x1 = Math.min(x0 + TILE_SIZE, grid.width);
+				final int y1 = Math.min(y0 + TILE_SIZE, grid.height);
+				final SplittableRandom tileRandom = random.split();
+				tiles.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						generateRegion(grid, x0, y0, x1, y1, tileRandom.nextInt(x0, x1), tileRandom.nextInt(y0, y1),
+								tileRandom);
+						return null;
+					}
+				});
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (Future<Void> tile : pool.invokeAll(tiles))
+				tile.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating tiles", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generating a tile failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		connectTiles(grid, tilesX, tilesY, random);
+	}
+
+	/**
+	 * Depth-first generation of the rectangle [x0, x1) x [y0, y1) of grid,
+	 * starting at cell (startX, startY). Touches no cell outside of that
+	 * rectangle, so disjoint rectangles can be generated concurrently.
+	 */
+	private void generateRegion(Labyrinth.Grid grid, int x0, int y0, int x1, int y1, int startX, int startY,
+			SplittableRandom random) {
+		// Cells still to do are kept as int indices relative to the region:
+		int regionWidth = x1 - x0;
+		IntStack cellsToDo = new IntStack();
+		cellsToDo.push((startY - y0) * regionWidth + startX - x0);
+		while (!cellsToDo.isEmpty()) {
+			int regionIndex = cellsToDo.pop();
+			int cx = x0 + regionIndex % regionWidth;
+			int cy = y0 + regionIndex / regionWidth;
+			long current = grid.cellIndex(cx, cy);
+			// For all unvisited neighboring cells in random order:
+			// Make a passage from the current cell to that neighbor
+			for (Direction dir : PERMUTATIONS[random.nextInt(PERMUTATIONS.length)]) {
+				int nx = cx + dir.dx;
+				int ny = cy + dir.dy;
+				if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1)
+					continue; // neighbor is not in the region
+
+				long neighbor = grid.neighbor(current, dir);
+				// If neighbor has no passage yet, i.e. has not been visited
+				// yet during generation, or creating a cycle is OK:
+				if (grid.passages(neighbor) == 0 || random.nextDouble() < cycleCreationProbability) {
+					grid.addPassage(current, dir);
+
+					// Remember to continue from this neighbor later on
+					cellsToDo.push((ny - y0) * regionWidth + nx - x0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes one passage between each pair of tiles connected by a random
+	 * spanning tree of the tiles (so the labyrinth stays free of cycles if the
+	 * tiles are), plus a passage across each other cell on a tile border with
+	 * the cycle creation probability.
+	 */
+	private void connectTiles(Labyrinth.Grid grid, int tilesX, int tilesY, SplittableRandom random) {
+		boolean[] connected = new boolean[tilesX * tilesY];
+		IntStack tilesToDo = new IntStack();
+		connected[0] = true;
+		tilesToDo.push(0);
+		Direction[] unconnected = new Direction[4];
+		while (!tilesToDo.isEmpty()) {
+			int tile = tilesToDo.peek();
+			int tileX = tile % tilesX;
+			int tileY = tile / tilesX;
+			int count = 0;
+			for (Direction dir : Direction.VALUES) {
+				int nx = tileX + dir.dx;
+				int ny = tileY + dir.dy;
+				if (0 <= nx && nx < tilesX && 0 <= ny && ny < tilesY && !connected[ny * tilesX + nx])
+					unconnected[count++] = dir;
+			}
+			if (count == 0) {
+				tilesToDo.pop();
+				continue;
+			}
+			Direction dir = unconnected[random.nextInt(count)];
+			// Open the border towards the chosen tile at a random cell:
+			int x0 = tileX * TILE_SIZE;
+			int y0 = tileY * TILE_SIZE;
+			int x, y;
+			if (dir.dx != 0) {
+				x = dir.dx > 0 ? Math.min(x0 + TILE_SIZE, grid.width) - 1 : x0;
+				y = random.nextInt(y0, Math.min(y0 + TILE_SIZE, grid.height));
+			} else {
+				x = random.nextInt(x0, Math.min(x0 + TILE_SIZE, grid.width));
+				y = dir.dy > 0 ? Math.min(y0 + TILE_SIZE, grid.height) - 1 : y0;
+			}
+			grid.addPassage(grid.cellIndex(x, y), dir);
+			int next = (tileY + dir.dy) * tilesX + tileX + dir.dx;
+			connected[next] = true;
+			tilesToDo.push(next);
+		}
+
+		if (cycleCreationProbability > 0) {
+			for (int x = TILE_SIZE; x < grid.width; x += TILE_SIZE)
+				for (int y = 0; y < grid.height; ++y)
+					if (random.nextDouble() < cycleCreationProbability)
+						grid.addPassage(grid.cellIndex(x - 1, y), Direction.E);
+			for (int y = TILE_SIZE; y < grid.height; y += TILE_SIZE)
+				for (int x = 0; x < grid.width; ++x)
+					if (random.nextDouble() < cycleCreationProbability)
+						grid.addPassage(grid.cellIndex(x, y - 1), Direction.S);
+		}
+	}
+
+	private static Direction[][] permutations() {
+		Direction[][] permutations = new Direction[24][];
+		int count = 0;
+		for (Direction a : Direction.VALUES)
+			for (Direction b : Direction.VALUES)
+				for (Direction c : Direction.VALUES)
+					for (Direction d : Direction.VALUES)
+						if (a != b && a != c && a != d && b != c && b != d && c != d)
+							permutations[count++] = new Direction[] { a, b, c, d };
+		return permutations;
+	}
+}
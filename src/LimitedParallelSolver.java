@@ -1,70 +1,113 @@
 
 
-import java.util.ArrayDeque;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.TimeUnit;
 
-public class LimitedParallelSolver implements LabyrinthSolver {
+public class LimitedParallelSolver implements SolverEngine {
 
-	private Labyrinth lab;
-	
-	private AtomicIntegerArray visited;
-
-	protected Semaphore activeThreads;
 	protected int maxThreads;
 	
-	protected ForkJoinPool fjk;
-	private ForkJoinTask<ArrayDeque<Point>> initialTask;
+	protected ForkJoinPool fjk; // null unless open
+
+	private final int parallelism;
 	
 	public LimitedParallelSolver() {
-		this.lab = null;
+		this(Runtime.getRuntime().availableProcessors());
 	}
 
-	public void initializeDatastructure(Labyrinth lab) {
-		this.maxThreads = Runtime.getRuntime().availableProcessors() - 1;
-		this.activeThreads  = new Semaphore(this.maxThreads);
-		this.lab = lab;
-		this.visited = new AtomicIntegerArray(this.lab.grid.width*this.lab.grid.height);
-		this.fjk = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-		this.initialTask = new LimitedParallelSolverTask<ArrayDeque<Point>>(lab.grid.start, lab.grid, new ArrayDeque<Point>(), this);
+	public LimitedParallelSolver(int parallelism) {
+		this.parallelism = parallelism;
 	}
-	
+
 	@Override
-	public Point[] solve(Labyrinth lab) {
-		// Task initial starten und auf Ergebnis warten
-		this.fjk.execute(this.initialTask);
-		while(this.initialTask.isDone() == false) {
+	public void open() {
+		if (this.fjk == null) {
+			this.maxThreads = this.parallelism - 1;
+			this.fjk = new ForkJoinPool(this.parallelism);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.fjk != null) {
+			this.fjk.shutdown();
 			try {
-				Thread.sleep(100);
-			} catch(InterruptedException ie) {
-				System.err.println(ie);
+				this.fjk.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
-			//System.out.println("besetzt Semaphore: " + (this.maxThreads - this.activeThreads.availablePermits()) + " | " + this.fjk);
+			this.fjk = null;
 		}
-		ArrayDeque<Point> result = null;
+	}
+	
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		// Wait for the result, which the initial task hands over when done
 		try {
-			result = initialTask.get();
-		} catch (InterruptedException | ExecutionException e) {
-			e.printStackTrace();
-		}	
-		return result.toArray(new Point[0]);
+			return this.solveAsync(lab).join();
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Solving failed", e.getCause());
+		}
 	}
 
-	public boolean hasPassage(Point current, Point neighbor) {
-		return this.lab.hasPassage(current, neighbor);
+	/**
+	 * Starts solving lab on the pool and returns at once, see
+	 * Labyrinth.solveAsync(). Several labyrinths may be solved at once, each
+	 * with its own tasks and permits.
+	 *
+	 * @return A future completed with the path through lab (or null if there
+	 *         is no solution) by the initial task once all tasks are done
+	 */
+	public CompletableFuture<Point[]> solveAsync(Labyrinth lab) {
+		if (this.fjk == null)
+			throw new IllegalStateException("LimitedParallelSolver is not open");
+		// Task initial starten
+		// (a new task for every solve, as a ForkJoinTask runs only once; every
+		// task joins the tasks it forked, so the pool is idle once it is done)
+		Search search = new Search(lab, this.maxThreads, this.fjk);
+		this.fjk.execute(new LimitedParallelSolverTask<Boolean>(lab.grid.index(lab.grid.start), null, lab.grid, search, true));
+		return search.result;
 	}
 
-	public boolean tryVisit(Point current) {
-		int index = current.x * this.lab.grid.width + current.y;
-		return this.visited.compareAndSet(index, 0, 1);
-	}
+	/*
+	 * The state of one solve, shared by all its tasks.
+	 */
+	static final class Search {
+
+		final Labyrinth lab;
+		// Every task releases a permit when done, the initial one included
+		final Semaphore activeThreads;
+		// Cancelled by the task that reaches end, so that all others stop
+		final CancellationToken cancellation = new CancellationToken();
+		final CompletableFuture<Point[]> result = new CompletableFuture<Point[]>();
+		private final ForkJoinPool pool;
+		private final long stealsBefore;
+
+		Search(Labyrinth lab, int maxThreads, ForkJoinPool pool) {
+			this.lab = lab;
+			this.activeThreads = new Semaphore(maxThreads);
+			this.pool = pool;
+			this.stealsBefore = pool.getStealCount();
+		}
+
+		// Called by the initial task when it is done
+		void complete(Boolean found) {
+			SolverStats.Counts counts = new SolverStats.Counts();
+			counts.steals = this.pool.getStealCount() - this.stealsBefore;
+			this.lab.stats.add(counts);
+			this.result.complete(found != null ? this.lab.pathTo(this.lab.grid.index(this.lab.grid.end)) : null);
+		}
 
-	public boolean visitedBefore(Point neighbor) {
-		int index = neighbor.x * this.lab.grid.width + neighbor.y;
-		return (this.visited.get(index) == 1);
+		public boolean tryVisit(int current, Direction cameFrom) {
+			return this.lab.tryVisit(current, cameFrom);
+		}
+
+		public boolean visitedBefore(int neighbor) {
+			return this.lab.visitedBefore(neighbor);
+		}
 	}
 
 }
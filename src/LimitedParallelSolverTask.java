@@ -1,6 +1,5 @@
 
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.ForkJoinTask;
@@ -10,43 +9,31 @@ public class LimitedParallelSolverTask<T> extends ForkJoinTask<T> {
 	private static final long serialVersionUID = 1L;
 	private T taskResult;
 	
-	private volatile T earlyResult;
-	private volatile boolean haveEarlyResult;
-
-	private LimitedParallelSolverTask<ArrayDeque<Point>> parentTask;
-	
-	private LimitedParallelSolver dataHolder;
+	private LimitedParallelSolver.Search dataHolder;
+	private boolean initialTask; // completes the result of dataHolder when done
 	private Labyrinth.Grid grid;
-	private Point startPoint;
-	private ArrayDeque<Point> pathSoFar;
-	private ArrayDeque<PointAndDirection> backtrackStack;
+	private int startPoint;
+	private Direction cameFrom; // direction from startPoint back to the cell before it (null for start)
+	private IntStack backtrackStack; // pairs of (neighbor, ordinal of the direction back to the branching point)
 	
-	private Collection<ForkJoinTask<ArrayDeque<Point>>> forkedTasks;
+	private Collection<ForkJoinTask<Boolean>> forkedTasks;
 
-	// Constructor with parentTask reference
-	public LimitedParallelSolverTask(Point startPoint, Labyrinth.Grid grid, ArrayDeque<Point> pathSoFar, LimitedParallelSolver dataHolder, LimitedParallelSolverTask<ArrayDeque<Point>> parentTask) {
-		this(startPoint, grid, pathSoFar, dataHolder); // Invoke default constructor (avoid redundant code)
-		this.parentTask = parentTask;
-	}
+	private final SolverStats.Counts counts = new SolverStats.Counts();
 
-	// Default constructor for initial Task
-	public LimitedParallelSolverTask(Point startPoint, Labyrinth.Grid grid, ArrayDeque<Point> pathSoFar, LimitedParallelSolver dataHolder) {
-		this.backtrackStack = new ArrayDeque<PointAndDirection>();
-		this.forkedTasks = new ArrayList<ForkJoinTask<ArrayDeque<Point>>>(); 
+	public LimitedParallelSolverTask(int startPoint, Direction cameFrom, Labyrinth.Grid grid, LimitedParallelSolver.Search dataHolder, boolean initialTask) {
+		this.backtrackStack = new IntStack();
+		this.forkedTasks = new ArrayList<ForkJoinTask<Boolean>>(); 
 		this.startPoint = startPoint;
+		this.cameFrom = cameFrom;
 		this.grid = grid;
-		this.pathSoFar = pathSoFar;
 		this.dataHolder = dataHolder;
-		this.parentTask = null;
-		
-		this.haveEarlyResult = false;
-		this.earlyResult = null;
+		this.initialTask = initialTask;
 	}
 
-	private ArrayDeque<Point> collectResults() {
+	private Boolean collectResults() {
 		// I did not make it, check the others.
-		for(ForkJoinTask<ArrayDeque<Point>> fjt : this.forkedTasks) {
-			ArrayDeque<Point> result = fjt.join();
+		for(ForkJoinTask<Boolean> fjt : this.forkedTasks) {
+			Boolean result = fjt.join();
 			if(result != null) {
 				return result;
 			}
@@ -55,67 +42,81 @@ public class LimitedParallelSolverTask<T> extends ForkJoinTask<T> {
 		return null;
 	}
 	
+	// Returns Boolean.TRUE if this task or one forked by it has reached end (see Labyrinth.pathTo()), else null
 	public T compute() {
-		Collection<ForkJoinTask<ArrayDeque<Point>>> newTasks = new ArrayList<ForkJoinTask<ArrayDeque<Point>>>();
-		Point current = this.startPoint;
-		Direction[] dirs = Direction.values(); // static data
-		while(!current.equals(this.grid.end)) {
-			if(this.haveEarlyResult) {
-				//System.out.println("I was completed early, returning result! :-)");
-				return this.earlyResult;
+		Collection<ForkJoinTask<Boolean>> newTasks = new ArrayList<ForkJoinTask<Boolean>>();
+		int current = this.startPoint;
+		Direction cameFrom = this.cameFrom;
+		int end = this.grid.index(this.grid.end);
+		// Check for cancellation on entry, then every CancellationToken.CHECK_INTERVAL cells
+		int stepsUntilCheck = 1;
+		while(true) {
+			if(--stepsUntilCheck == 0) {
+				if(this.dataHolder.cancellation.isCancelled()) {
+					// Somebody else made it, stop here (the tasks forked stop likewise).
+					return (T) this.collectResults();
+				}
+				stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
 			}
 			// First, mark current field as visited!
-			if(this.dataHolder.tryVisit(current)) {
-				this.pathSoFar.add(current);
-			} else {
+			if(!this.dataHolder.tryVisit(current, cameFrom)) {
+				this.counts.visitFailures++;
 				// If that failed try backtracking ...
 				if(this.backtrackStack.isEmpty()) {
 					// No result from myself, what do i do now?
 					return (T) this.collectResults();					
 				}
-				// Backtrack: Continue with cell saved at latest branching point:
-				PointAndDirection pd = backtrackStack.pop();
-				current = pd.getPoint();
-				Point branchingPoint = current.getNeighbor(pd.getDirectionToBranchingPoint());
-				// Remove the dead end from the top of pathSoFar, i.e. all cells after branchingPoint:
-				while (!pathSoFar.peekLast().equals(branchingPoint)) {
-					pathSoFar.removeLast();
-				}
+				// Backtrack: Continue with cell saved at latest branching point
+				// (no path to trim, as the path is recorded per cell):
+				cameFrom = Direction.VALUES[backtrackStack.pop()];
+				current = backtrackStack.pop();
+				this.counts.backtracks++;
 				continue;
 			}
+			this.counts.cellsVisited++;
+			if(current == end) {
+				this.dataHolder.cancellation.cancel();
+				return (T) Boolean.TRUE;
+			}
 			// Use first random unvisited neighbor as next cell, push others on the backtrack stack: 
-			Point next = null;
+			int next = -1;
+			Direction nextCameFrom = null;
 			newTasks.clear();
-			for (Direction directionToNeighbor: dirs) {
-				Point neighbor = current.getNeighbor(directionToNeighbor);
+			for (Direction directionToNeighbor: Direction.VALUES) {
 				// Fork for each direction available
-				if (this.dataHolder.hasPassage(current, neighbor) && !this.dataHolder.visitedBefore(neighbor)) {
-					if(next == null) {
+				if (!this.grid.hasPassage(current, directionToNeighbor))
+					continue;
+				int neighbor = this.grid.neighbor(current, directionToNeighbor);
+				if (!this.dataHolder.visitedBefore(neighbor)) {
+					if(next == -1) {
 						// I go this way
 						next = neighbor;
+						nextCameFrom = directionToNeighbor.opposite;
 					} else {
-						// Fork for that way if possible, otherwise note for backtracking
+						// Fork for that way if possible (in O(1), sharing the path so far), otherwise note for backtracking
 						if(this.dataHolder.activeThreads.tryAcquire()) {
-							ForkJoinTask<ArrayDeque<Point>> neighbourTask = new LimitedParallelSolverTask<ArrayDeque<Point>>(neighbor, this.grid, this.pathSoFar.clone(), this.dataHolder, (LimitedParallelSolverTask<ArrayDeque<Point>>) this);
+							ForkJoinTask<Boolean> neighbourTask = new LimitedParallelSolverTask<Boolean>(neighbor, directionToNeighbor.opposite, this.grid, this.dataHolder, false);
 							newTasks.add(neighbourTask);
 						} else {
 							// Note for backtracking
-							this.backtrackStack.push(new PointAndDirection(neighbor, directionToNeighbor.opposite));
+							this.backtrackStack.push(neighbor);
+							this.backtrackStack.push(directionToNeighbor.opposite.ordinal());
 						}
 					}
 				}
 			}
 			if(newTasks.size() > 0) {
 				// Fork all the tasks!
-				for(ForkJoinTask<ArrayDeque<Point>> task: newTasks) {
+				this.counts.forks += newTasks.size();
+				for(ForkJoinTask<Boolean> task: newTasks) {
 					task.fork();
 				}
 				this.forkedTasks.addAll(newTasks);
 			}
 			// Advance to next cell, if any:
-			if (next != null) {
-				// DEBUG System.out.println("Advancing from " + current + " to " + next);
+			if (next != -1) {
 				current = next;
+				cameFrom = nextCameFrom;
 			} else {
 				// No where to go, we did not make it! :-(
 				// Try backtracking ...
@@ -124,37 +125,34 @@ public class LimitedParallelSolverTask<T> extends ForkJoinTask<T> {
 					return (T) this.collectResults();					
 				}
 				// Backtrack: Continue with cell saved at latest branching point:
-				PointAndDirection pd = backtrackStack.pop();
-				current = pd.getPoint();
-				Point branchingPoint = current.getNeighbor(pd.getDirectionToBranchingPoint());
-				// Remove the dead end from the top of pathSoFar, i.e. all cells after branchingPoint:
-				while (!pathSoFar.peekLast().equals(branchingPoint)) {
-					pathSoFar.removeLast();
-				}
+				cameFrom = Direction.VALUES[backtrackStack.pop()];
+				current = backtrackStack.pop();
+				this.counts.backtracks++;
 			}
 		}
-		this.pathSoFar.addLast(current);
-		 // Point[0] is only for making the return value have type Point[] (and not Object[]):
-		//return pathSoFar.toArray(new Point[0]); 
-		return (T) this.pathSoFar;
 	}
 
 	@Override
 	protected boolean exec() {
-		this.taskResult = this.compute();
-		// Only try to propagate the result to parent tasks.
-		if(this.parentTask != null && this.taskResult != null) {
-			this.parentTask.propagateSuccessfulTask((ArrayDeque<Point>) this.taskResult);
+		try {
+			this.taskResult = this.compute();
+		} catch(RuntimeException | Error e) {
+			// Fail the solve rather than leave it waiting
+			if(this.initialTask) {
+				this.dataHolder.result.completeExceptionally(e);
+			}
+			throw e;
+		} finally {
+			this.dataHolder.lab.stats.add(this.counts);
+			this.dataHolder.activeThreads.release();
+		}
+		// Signal completion directly, instead of someone polling isDone().
+		if(this.initialTask) {
+			this.dataHolder.complete((Boolean) this.taskResult);
 		}
-		this.dataHolder.activeThreads.release();
 		return true;
 	}
 
-	private void propagateSuccessfulTask(T earlyResult) {
-		this.earlyResult = earlyResult;
-		this.haveEarlyResult = true;
-	}
-
 	@Override
 	public T getRawResult() {
 		return this.taskResult;
@@ -0,0 +1,68 @@
+/*
+ * Passages read and written directly in a memory mapping of a grid file
+ * (see GridFile) without copying them to the heap. Two cells share one byte:
+ * the cell with the even index uses the low nibble, the following cell the
+ * high nibble. Hence cells with indices 2k and 2k+1 must not be written
+ * concurrently. Large files are mapped in chunks of 1 GiB, so the number of
+ * cells is not limited by the maximum size of a single mapping.
+ */
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public final class MappedPassageStore implements PassageStore {
+
+	private static final int CHUNK_SHIFT = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	private final MappedByteBuffer[] chunks;
+	private final long cells;
+
+	/**
+	 * Maps the (cells + 1) / 2 bytes of channel starting at offset. The
+	 * mapping stays valid after channel is closed.
+	 */
+	public MappedPassageStore(FileChannel channel, FileChannel.MapMode mode, long offset, long cells)
+			throws IOException {
+		this.cells = cells;
+		long bytes = (cells + 1) / 2;
+		chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for (int i = 0; i < chunks.length; ++i) {
+			long chunkStart = (long) i << CHUNK_SHIFT;
+			chunks[i] = channel.map(mode, offset + chunkStart, Math.min(CHUNK_MASK + 1, bytes - chunkStart));
+		}
+	}
+
+	@Override
+	public long cells() {
+		return cells;
+	}
+
+	@Override
+	public int get(long cell) {
+		long position = cell >>> 1;
+		int bothCells = chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & CHUNK_MASK));
+		return (cell & 1) == 0 ? bothCells & 0xF : (bothCells >>> 4) & 0xF;
+	}
+
+	@Override
+	public void set(long cell, int passages) {
+		long position = cell >>> 1;
+		MappedByteBuffer chunk = chunks[(int) (position >>> CHUNK_SHIFT)];
+		int index = (int) (position & CHUNK_MASK);
+		int bothCells = chunk.get(index);
+		if ((cell & 1) == 0)
+			bothCells = (bothCells & 0xF0) | (passages & 0xF);
+		else
+			bothCells = (bothCells & 0x0F) | ((passages & 0xF) << 4);
+		chunk.put(index, (byte) bothCells);
+	}
+
+	// Writes changes made through set() back to the file
+	public void force() {
+		for (MappedByteBuffer chunk : chunks)
+			chunk.force();
+	}
+
+}
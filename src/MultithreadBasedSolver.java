@@ -1,87 +1,145 @@
-
-
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.concurrent.Exchanger;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class MultithreadBasedSolver implements LabyrinthSolver{
+public class MultithreadBasedSolver implements SolverEngine {
 
 	public Labyrinth lab;
-	public Exchanger<Point[]> solutionHandover;
-	
-	private ArrayList<MultithreadBasedSolverThread> workerThreads;
-	
-	private AtomicIntegerArray visited;
-	
-	public LinkedBlockingDeque<MultithreadBasedSolverThread.WorkPackage> workQueue;
-	
+
+	ArrayList<MultithreadBasedSolverThread> workerThreads; // null unless open
+
+	// Number of worker threads currently looking for work: While there are
+	// any, the others share spare branches instead of keeping them. Once all
+	// of them are, no work is left.
+	public final AtomicInteger idleWorkers = new AtomicInteger();
+
+	// Per solve: Cancelled by the worker that reaches end (after setting
+	// found), or by the last one to run out of work, so that all others stop
+	volatile CancellationToken cancellation;
+	volatile boolean found;
+
+	// Guarded by this: The number of solves started, of workers not done with
+	// the current one yet, and whether the workers are to stop
+	private int solvesStarted;
+	private int busyWorkers;
+	private boolean closed;
+
 	public final int availableProccesors;
-	
+
 	public MultithreadBasedSolver() {
-		this.availableProccesors = Runtime.getRuntime().availableProcessors();
+		this(Runtime.getRuntime().availableProcessors());
 	}
 
-	public void initializeDatastructure(Labyrinth labyrinth) {
-		// Prepare neccessary datastructure
-		this.lab = labyrinth;
-		this.visited = new AtomicIntegerArray(this.lab.grid.width*this.lab.grid.height);
-		// Create a workQueue
-		this.workQueue = new LinkedBlockingDeque<MultithreadBasedSolverThread.WorkPackage>();
-		// Create threads
-		int availableProcessors = Runtime.getRuntime().availableProcessors();
+	public MultithreadBasedSolver(int threads) {
+		this.availableProccesors = threads;
+	}
+
+	@Override
+	public void open() {
+		if(this.workerThreads != null) {
+			return;
+		}
+		synchronized(this) {
+			this.closed = false;
+			this.solvesStarted = 0;
+		}
+		// Create threads, each with its own work deque
 		this.workerThreads = new ArrayList<MultithreadBasedSolverThread>();
-		for(int i = 0; i < availableProcessors; i++) {
-			this.workerThreads.add(new MultithreadBasedSolverThread(this));
+		for(int i = 0; i < this.availableProccesors; i++) {
+			this.workerThreads.add(new MultithreadBasedSolverThread(this, i));
 		}
-		// Prepare solution-handover
-		this.solutionHandover = new Exchanger<Point[]>();
 		// Start the threads to be ready for work.
 		for(MultithreadBasedSolverThread workerThread : this.workerThreads) {
 			workerThread.start();
 		}
 	}
 
+	@Override
+	public void close() {
+		if(this.workerThreads == null) {
+			return;
+		}
+		synchronized(this) {
+			this.closed = true;
+			this.notifyAll();
+		}
+		try {
+			for(MultithreadBasedSolverThread workerThread: this.workerThreads) {
+				workerThread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.workerThreads = null;
+	}
+
 	@Override
 	public Point[] solve(Labyrinth lab) {
+		if(this.workerThreads == null) {
+			throw new IllegalStateException("MultithreadBasedSolver is not open");
+		}
+		this.lab = lab;
+		this.found = false;
+		this.idleWorkers.set(0);
+		this.cancellation = new CancellationToken();
 		// Dispatch initial work to first thread and run thems
 		MultithreadBasedSolverThread firstWorker = this.workerThreads.get(0);
-		MultithreadBasedSolverThread.WorkPackage initialWork = firstWorker.generateWorkPackage(lab.grid.start, new ArrayDeque<Point>());
-		this.enqueueWork(initialWork);
-		Point[] solution = null;
-		try {
-			// Wait for a solution to come up. (being blocked)
-			solution = this.solutionHandover.exchange(null);
-		} catch (InterruptedException e) {
-			System.err.println("I got interrupted waiting for the solution! Damn it!");
-			e.printStackTrace();
+		this.enqueueWork(firstWorker.generateWorkPackage(lab.grid.index(lab.grid.start), null));
+		boolean interrupted = false;
+		synchronized(this) {
+			this.busyWorkers = this.workerThreads.size();
+			this.solvesStarted++;
+			this.notifyAll();
+			// Wait for all workers to be done, i.e. for a solution or for all work to run out. (being blocked)
+			while(this.busyWorkers > 0) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					// Stop the workers, and wait for them all the same
+					interrupted = true;
+					this.cancellation.cancel();
+				}
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
 		}
-		this.shutdownNow();
-		return solution;
+		return this.found ? lab.pathTo(lab.grid.index(lab.grid.end)) : null;
 	}
-	
-	private void shutdownNow() {
-		for(MultithreadBasedSolverThread workerThread: this.workerThreads) {
-			workerThread.interrupt();
+
+	/**
+	 * Blocks a worker until the solve after the given number of solves has
+	 * started.
+	 *
+	 * @return false if the solver has been closed instead
+	 */
+	synchronized boolean awaitSolve(int solvesDone) throws InterruptedException {
+		while(!this.closed && this.solvesStarted == solvesDone) {
+			this.wait();
 		}
+		return !this.closed;
 	}
 
-	// Provide some work so everybody who wants one can have one.
+	// Called by each worker once it has stopped working on the current solve
+	synchronized void workerDone() {
+		this.busyWorkers--;
+		if(this.busyWorkers == 0) {
+			this.notifyAll();
+		}
+	}
+
+	// Provide the initial work; it is stolen from the first worker by the others.
 	public void enqueueWork(MultithreadBasedSolverThread.WorkPackage work) {
-		this.workQueue.add(work);
+		this.workerThreads.get(0).share(work);
 	}
 
-	public boolean tryVisit(Point current) {
-		int index = current.x * this.lab.grid.width + current.y;
-		return this.visited.compareAndSet(index, 0, 1);
+	public boolean tryVisit(int current, Direction cameFrom) {
+		return this.lab.tryVisit(current, cameFrom);
 	}
 
-	public boolean visitedBefore(Point neighbor) {
-		int index = neighbor.x * this.lab.grid.width + neighbor.y;
-		return (this.visited.get(index) == 1);
+	public boolean visitedBefore(int neighbor) {
+		return this.lab.visitedBefore(neighbor);
 	}
 
 
-	
+
 }
@@ -1,143 +1,222 @@
-
-
-import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.LockSupport;
 
 public class MultithreadBasedSolverThread extends Thread {
 
 	private static int threadCounter = 0;
 	
+	// Idle workers spin this often looking for work before they start to park
+	private static final int SPINS_BEFORE_PARKING = 100;
+	private static final long PARK_NANOS = 50000;
+
 	private MultithreadBasedSolver dataHolder;
 	
+	// Index of this worker in dataHolder.workerThreads
+	private final int index;
+
+	// Work shared by this worker: It takes work from the tail, idle workers
+	// steal from the head (i.e. the oldest work, closest to start).
+	private final ConcurrentLinkedDeque<WorkPackage> deque = new ConcurrentLinkedDeque<WorkPackage>();
+
+	// Backtracking is still a thing: pairs of (neighbor, ordinal of the direction back to the branching point),
+	// kept across work packages and solves
+	private final IntStack backtrackStack = new IntStack();
+
+	// Counted per work package, then added to the labyrinth's statistics
+	private final SolverStats.Counts counts = new SolverStats.Counts();
+
 	// Constructor
-	public MultithreadBasedSolverThread(MultithreadBasedSolver dataHolder) {
+	public MultithreadBasedSolverThread(MultithreadBasedSolver dataHolder, int index) {
 		this.setName("WorkStealingThread #" + MultithreadBasedSolverThread.threadCounter);
 		MultithreadBasedSolverThread.threadCounter++;
 		this.dataHolder = dataHolder;
+		this.index = index;
+		// Like the threads of a ForkJoinPool, do not keep the program running if the solver is not closed
+		this.setDaemon(true);
 	}
 	
-	// Container to pass over undone work
+	// Container to pass over undone work. The path to next is not copied, but
+	// recorded per cell by the labyrinth (see Labyrinth.pathTo()).
 	public class WorkPackage {
-		public final ArrayDeque<Point> pathSoFar;
-		public final Point next;
-		public WorkPackage(Point next, ArrayDeque<Point> pathSoFar) {
+		public final Direction cameFrom; // direction from next back to the cell before it (null for start)
+		public final int next;
+		public WorkPackage(int next, Direction cameFrom) {
 			this.next = next;
-			this.pathSoFar = pathSoFar.clone();
+			this.cameFrom = cameFrom;
 		}
 	}
 	
-	public MultithreadBasedSolverThread.WorkPackage generateWorkPackage(Point next, ArrayDeque<Point> pathSoFar) {
-		return new WorkPackage(next, pathSoFar);
+	public MultithreadBasedSolverThread.WorkPackage generateWorkPackage(int next, Direction cameFrom) {
+		return new WorkPackage(next, cameFrom);
 	}
 	
-	// Main run method of thread. Processes WorkPackages, shuts down when interrupted
+	// Main run method of thread. Works on one solve after the other, shuts down when the solver is closed
 	public void run() {
-		while(Thread.interrupted() == false) {
-			// Fetch next WorkPackage, wait if neccessary. (busy waiting right now :-/)
-			WorkPackage currentWorkPackage = null;
-			while(currentWorkPackage == null) {
-				try {
-					// If that did not work wait on global workQueue for work to show up.
-					currentWorkPackage = this.dataHolder.workQueue.takeLast();
-				} catch(InterruptedException ie) {
-					// Probably i have to stop.
-					return;
-				}
+		int solvesDone = 0;
+		try {
+			while(this.dataHolder.awaitSolve(solvesDone)) {
+				this.work(this.dataHolder.cancellation);
+				solvesDone++;
+				this.dataHolder.workerDone();
 			}
-			try {
-				this.process(currentWorkPackage);				
-			} catch(InterruptedException ie) {
-				// We need to stop now.
-				return;
+		} catch(InterruptedException ie) {
+			// We need to stop now.
+		}
+	}
+
+	// Processes WorkPackages until the solve is cancelled
+	private void work(CancellationToken cancellation) {
+		while(!cancellation.isCancelled()) {
+			// Take own work first, else steal work from the others, waiting if neccessary.
+			WorkPackage currentWorkPackage = this.deque.pollLast();
+			if(currentWorkPackage == null) {
+				long idleSince = System.nanoTime();
+				currentWorkPackage = this.steal(cancellation);
+				this.counts.idleNanos += System.nanoTime() - idleSince;
+				if(currentWorkPackage == null) {
+					// Solved, or no work left anywhere.
+					break;
+				}
+				this.counts.steals++;
 			}
+			this.process(currentWorkPackage, cancellation);
+			this.dataHolder.lab.stats.add(this.counts);
 		}
+		this.dataHolder.lab.stats.add(this.counts);
+		// Drop work left over from a cancelled solve
+		this.deque.clear();
 	}
 
-	private void process(WorkPackage currentWorkPackage) throws InterruptedException {
-		Point current = currentWorkPackage.next;
-		ArrayDeque<Point> pathSoFar = currentWorkPackage.pathSoFar;  // Path from start to just before current
-		ArrayDeque<PointAndDirection> backtrackStack = new ArrayDeque<PointAndDirection>(); // Backtracking is still a thing
-		while (!current.equals(this.dataHolder.lab.grid.end)) {
-			if(this.isInterrupted()) {
-				throw new InterruptedException("I got interrupted, let's stop now.");
+	// Makes work available to idle workers
+	void share(WorkPackage work) {
+		this.deque.addLast(work);
+	}
+
+	/**
+	 * Counts this worker as idle while it tries to steal from the other
+	 * workers' deques, spinning at first and then parking between attempts.
+	 * A worker is not counted while it holds work, and only adds work to its
+	 * own deque while it holds work, so once all workers are idle, all deques
+	 * are empty for good: The last one to become idle cancels the solve.
+	 * 
+	 * @return The work stolen, or null if cancelled
+	 */
+	private WorkPackage steal(CancellationToken cancellation) {
+		ArrayList<MultithreadBasedSolverThread> workers = this.dataHolder.workerThreads;
+		if(this.becomeIdle(cancellation)) {
+			return null;
+		}
+		for(int attempt = 0; !cancellation.isCancelled(); attempt++) {
+			for(int i = 1; i <= workers.size(); i++) {
+				// Starting with the next worker, so that thieves spread out
+				ConcurrentLinkedDeque<WorkPackage> victim = workers.get((this.index + i) % workers.size()).deque;
+				if(victim.peekFirst() == null) {
+					continue;
+				}
+				this.dataHolder.idleWorkers.decrementAndGet();
+				WorkPackage stolen = victim.pollFirst();
+				if(stolen != null) {
+					return stolen;
+				}
+				// Somebody else was faster
+				if(this.becomeIdle(cancellation)) {
+					return null;
+				}
 			}
-			Point next = null;
-			if(this.dataHolder.tryVisit(current)) {
-				pathSoFar.add(current);
+			if(attempt < SPINS_BEFORE_PARKING) {
+				Thread.onSpinWait();
 			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		return null;
+	}
+
+	// Returns true if this was the last worker to become idle, i.e. there is no solution
+	private boolean becomeIdle(CancellationToken cancellation) {
+		if(this.dataHolder.idleWorkers.incrementAndGet() == this.dataHolder.workerThreads.size()) {
+			cancellation.cancel();
+			return true;
+		}
+		return false;
+	}
+
+	private void process(WorkPackage currentWorkPackage, CancellationToken cancellation) {
+		Labyrinth.Grid grid = this.dataHolder.lab.grid;
+		int current = currentWorkPackage.next;
+		int end = grid.index(grid.end);
+		Direction cameFrom = currentWorkPackage.cameFrom;
+		IntStack backtrackStack = this.backtrackStack;
+		backtrackStack.clear();
+		int stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+		while (true) {
+			if(--stepsUntilCheck == 0) {
+				if(cancellation.isCancelled()) {
+					return; // Somebody else made it, let's stop now.
+				}
+				stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+			}
+			int next = -1;
+			Direction nextCameFrom = null;
+			if(!this.dataHolder.tryVisit(current, cameFrom)) {
+				this.counts.visitFailures++;
 				// Do backtracking
 				if (backtrackStack.isEmpty()) {
 					return; // No more backtracking avaible: No solution exists on this work package.
 				}
 				// Backtrack: Continue with cell saved at latest branching point:
-				PointAndDirection pd = backtrackStack.pop();
-				current = pd.getPoint();
-				Point branchingPoint = current.getNeighbor(pd.getDirectionToBranchingPoint());
-				// Remove the dead end from the top of pathSoFar, i.e. all cells after branchingPoint:
-				while (!pathSoFar.getLast().equals(branchingPoint)) {
-					// DEBUG System.out.println("    Going back before " + pathSoFar.peekLast());
-					pathSoFar.removeLast();
-				}
+				cameFrom = Direction.VALUES[backtrackStack.pop()];
+				current = backtrackStack.pop();
+				this.counts.backtracks++;
 				continue; // This is important! We have to visit the new current field again!
 			}
+			this.counts.cellsVisited++;
+			if (current == end) {
+				break;
+			}
 			// Use first random unvisited neighbor as next cell, push others on the backtrack stack: 
-			Direction[] dirs = Direction.values();
-			for (Direction directionToNeighbor: dirs) {
-				Point neighbor = current.getNeighbor(directionToNeighbor);
-				if (this.dataHolder.lab.hasPassage(current, neighbor) && !this.dataHolder.visitedBefore(neighbor)) {
-					// This can be fine-tuned to determine when to dispatch work elsewhere.
-					boolean queueWorkGlobally = this.dataHolder.workQueue.size() < this.dataHolder.availableProccesors; 
-					if (next == null) {
+			for (Direction directionToNeighbor: Direction.VALUES) {
+				if (!grid.hasPassage(current, directionToNeighbor))
+					continue;
+				int neighbor = grid.neighbor(current, directionToNeighbor);
+				if (!this.dataHolder.visitedBefore(neighbor)) {
+					if (next == -1) {
 						// I proceed to go this way
 						next = neighbor;
+						nextCameFrom = directionToNeighbor.opposite;
 					} else {
-						// Either backtrack or create a new WorkPackage
-						if(queueWorkGlobally) {
-							this.dataHolder.enqueueWork(this.generateWorkPackage(neighbor, pathSoFar));							
+						// Either backtrack or create a new WorkPackage: Share only while
+						// somebody is idle and has not yet got the work shared before.
+						if(this.dataHolder.idleWorkers.get() > 0 && this.deque.isEmpty()) {
+							this.share(this.generateWorkPackage(neighbor, directionToNeighbor.opposite));
+							this.counts.forks++;
 						} else {
-							backtrackStack.push(new PointAndDirection(neighbor, directionToNeighbor.opposite));
+							backtrackStack.push(neighbor);
+							backtrackStack.push(directionToNeighbor.opposite.ordinal());
 						}
 					}
 				}
 			}
 			// Advance to next cell, if any:
-			if (next == null) {
+			if (next == -1) {
 				// Do backtracking
 				if (backtrackStack.isEmpty()) {
 					return; // No more backtracking avaible: No solution exists on this work package.
 				}
 				// Backtrack: Continue with cell saved at latest branching point:
-				PointAndDirection pd = backtrackStack.pop();
-				current = pd.getPoint();
-				Point branchingPoint = current.getNeighbor(pd.getDirectionToBranchingPoint());
-				// Remove the dead end from the top of pathSoFar, i.e. all cells after branchingPoint:
-				while (!pathSoFar.getLast().equals(branchingPoint)) {
-					// DEBUG System.out.println("    Going back before " + pathSoFar.peekLast());
-					pathSoFar.removeLast();
-				}
+				cameFrom = Direction.VALUES[backtrackStack.pop()];
+				current = backtrackStack.pop();
+				this.counts.backtracks++;
 				continue; // This is important! We have to visit the new current field again!
 			} else {
 				current = next;
+				cameFrom = nextCameFrom;
 			}
 		}
-		// Polish up the solution by adding the last field
-		pathSoFar.addLast(current);
-		 // Exchange the valid solution.
-		try {
-			this.dataHolder.solutionHandover.exchange(pathSoFar.toArray(new Point[0]));
-		} catch (InterruptedException e) {
-			System.err.println(this.logMsg("I was interrupted passing over the solution. DAMN IT!"));
-			e.printStackTrace();
-		}
-		// We're done!
-		return;
-	}
-	
-	private String logMsg(String message) {
-		StringBuilder sb = new StringBuilder("[");
-		sb.append(this.getName());
-		sb.append("] ");
-		sb.append(message);
-		return sb.toString();
+		// Stop the others right away; the solution is only converted into Points by the solver.
+		this.dataHolder.found = true;
+		cancellation.cancel();
 	}
 	
 }
@@ -1,58 +1,82 @@
+/*
+ * The sequential depth-first solver, and the baseline against which the
+ * parallel solvers' speedups are measured (see SolverBenchmark): It works on
+ * int cell indices only, and keeps its stacks, with the capacity they have
+ * grown to, for the next solve, so solves allocate nothing per cell once the
+ * stacks are large enough.
+ *
+ * Because of these stacks, an instance is not thread-safe: Threads solving
+ * labyrinths at the same time need an instance each.
+ */
 
+public class NonParallelSolver implements LabyrinthSolver{
 
-import java.util.ArrayDeque;
+	// Of each stack to begin with: enough for the paths and branches of most
+	// labyrinths up to a few million cells, and small compared to grids
+	// that need more (which the stacks grow to on demand)
+	private static final int INITIAL_STACK_CAPACITY = 1 << 16;
 
-public class NonParallelSolver implements LabyrinthSolver{
+	private final IntStack pathSoFar = new IntStack(INITIAL_STACK_CAPACITY); // Path from start to just before current
+	// Used as a stack: Branches not yet taken; solver will backtrack to these branching points later
+	// Each branch is pushed as two ints: first the neighbor to continue with, then the length
+	// of pathSoFar up to and including the branching point, so backtracking trims it at once
+	private final IntStack backtrackStack = new IntStack(INITIAL_STACK_CAPACITY);
 
 	@Override
 	public Point[] solve(Labyrinth lab) {
-		Point current = lab.grid.start;
-		ArrayDeque<Point> pathSoFar = new ArrayDeque<Point>();  // Path from start to just before current
-
-		ArrayDeque<PointAndDirection> backtrackStack = new ArrayDeque<PointAndDirection>();
-		// Used as a stack: Branches not yet taken; solver will backtrack to these branching points later
-		// Is it faster to allocate backtrackStack with width*height elements right away?
+		Labyrinth.Grid grid = lab.grid;
+		int current = grid.index(grid.start);
+		int end = grid.index(grid.end);
+		IntStack pathSoFar = this.pathSoFar;
+		IntStack backtrackStack = this.backtrackStack;
+		pathSoFar.clear();
+		backtrackStack.clear();
+		SolverStats.Counts counts = new SolverStats.Counts();
 
-		while (!current.equals(lab.grid.end)) {
-			Point next = null;
+		while (current != end) {
+			int next = -1;
 			lab.visit(current);
+			counts.cellsVisited++;
 
-			// Use first random unvisited neighbor as next cell, push others on the backtrack stack: 
-			Direction[] dirs = Direction.values();
-			for (Direction directionToNeighbor: dirs) {
-				Point neighbor = current.getNeighbor(directionToNeighbor);
-				if (lab.hasPassage(current, neighbor) && !lab.visitedBefore(neighbor)) {
-					if (next == null) // 1st unvisited neighbor
+			// Use first random unvisited neighbor as next cell, push others on the backtrack stack:
+			for (Direction directionToNeighbor: Direction.VALUES) {
+				if (!grid.hasPassage(current, directionToNeighbor))
+					continue;
+				int neighbor = grid.neighbor(current, directionToNeighbor);
+				if (!lab.visitedBefore(neighbor)) {
+					if (next == -1) // 1st unvisited neighbor
 						next = neighbor;
-					else // 2nd or higher unvisited neighbor: Save neighbor as starting cell for a later backtracking
-						backtrackStack.push(new PointAndDirection(neighbor, directionToNeighbor.opposite));
+					else { // 2nd or higher unvisited neighbor: Save neighbor as starting cell for a later backtracking
+						backtrackStack.push(neighbor);
+						backtrackStack.push(pathSoFar.size() + 1); // current is pushed below
+					}
 				}
 			}
 			// Advance to next cell, if any:
-			if (next != null) {
-				// DEBUG System.out.println("Advancing from " + current + " to " + next);
-				pathSoFar.addLast(current);
+			if (next != -1) {
+				pathSoFar.push(current);
 				current = next;
-			} else { 
+			} else {
 				// current has no unvisited neighbor: Backtrack, if possible
-				if (backtrackStack.isEmpty())
+				if (backtrackStack.isEmpty()) {
+					lab.stats.add(counts);
 					return null; // No more backtracking avaible: No solution exists
+				}
 
 				// Backtrack: Continue with cell saved at latest branching point:
-				PointAndDirection pd = backtrackStack.pop();
-				current = pd.getPoint();
-				Point branchingPoint = current.getNeighbor(pd.getDirectionToBranchingPoint());
-				// DEBUG System.out.println("Backtracking to " +  branchingPoint);
-				// Remove the dead end from the top of pathSoFar, i.e. all cells after branchingPoint:
-				while (!pathSoFar.peekLast().equals(branchingPoint)) {
-					// DEBUG System.out.println("    Going back before " + pathSoFar.peekLast());
-					pathSoFar.removeLast();
-				}
+				int pathLength = backtrackStack.pop();
+				current = backtrackStack.pop();
+				counts.backtracks++;
+				// Remove the dead end from the top of pathSoFar, i.e. all cells after the branching point:
+				counts.pathTrimSteps += pathSoFar.size() - pathLength;
+				pathSoFar.truncate(pathLength);
 			}
 		}
-		pathSoFar.addLast(current);
-		 // Point[0] is only for making the return value have type Point[] (and not Object[]):
-		return pathSoFar.toArray(new Point[0]); 
+		pathSoFar.push(current);
+		counts.cellsVisited++; // end
+		lab.stats.add(counts);
+		// Only the final path is converted into Points:
+		return grid.toPoints(pathSoFar);
 	}
-	
+
 }
@@ -0,0 +1,68 @@
+/*
+ * Passages kept outside of the Java heap in direct buffers, two cells per
+ * byte as in MappedPassageStore, in chunks of 1 GiB. Hence a grid may have
+ * far more than 2^31 cells and need not fit into the heap. Note that the JVM
+ * limits direct memory to the maximum heap size unless told otherwise, e.g.
+ * -Xmx2g -XX:MaxDirectMemorySize=16g for a grid of 30 billion cells.
+ * set() replaces the nibble of the cell with a CAS on the int containing it,
+ * so any two cells may be written concurrently, even if they share a byte.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class OffHeapPassageStore implements PassageStore {
+
+	private static final int CHUNK_SHIFT = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	// Little endian, so byte i of an int is found at bit 8 * i
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private final ByteBuffer[] chunks;
+	private final long cells;
+
+	public OffHeapPassageStore(long cells) {
+		this.cells = cells;
+		long bytes = (cells + 1) / 2;
+		chunks = new ByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for (int i = 0; i < chunks.length; ++i) {
+			long chunkBytes = Math.min(CHUNK_MASK + 1, bytes - ((long) i << CHUNK_SHIFT));
+			// Round up to whole ints and align them for the CAS in set()
+			// (direct buffers are initially all 0, i.e. no passages):
+			int alignedBytes = (int) ((chunkBytes + 3) & ~3L);
+			chunks[i] = ByteBuffer.allocateDirect(alignedBytes + 3).alignedSlice(4);
+		}
+	}
+
+	@Override
+	public long cells() {
+		return cells;
+	}
+
+	@Override
+	public int get(long cell) {
+		long position = cell >>> 1;
+		int bothCells = chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & CHUNK_MASK));
+		return (cell & 1) == 0 ? bothCells & 0xF : (bothCells >>> 4) & 0xF;
+	}
+
+	@Override
+	public void set(long cell, int passages) {
+		long position = cell >>> 1;
+		ByteBuffer chunk = chunks[(int) (position >>> CHUNK_SHIFT)];
+		int index = (int) (position & CHUNK_MASK);
+		int intIndex = index & ~3;
+		int shift = ((index & 3) << 3) + ((int) (cell & 1) << 2);
+		int mask = 0xF << shift;
+		int value = (passages & 0xF) << shift;
+		int word;
+		do {
+			word = (int) INTS.getVolatile(chunk, intIndex);
+		} while (!INTS.weakCompareAndSet(chunk, intIndex, word, (word & ~mask) | value));
+	}
+
+}
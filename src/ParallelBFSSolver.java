@@ -0,0 +1,179 @@
+/*
+ * Level-synchronous parallel breadth-first search: All cells of the current
+ * frontier (the cells at distance level from start) are expanded at once,
+ * split into one slice per thread, and each thread collects the newly visited
+ * cells in its own buffer. The buffers together form the frontier of the next
+ * level. As every cell is visited at the lowest level it can be reached at,
+ * the path found is a shortest path from start to end, also on labyrinths
+ * with cycles. For each visited cell only the direction to its parent is
+ * kept (2 bits per cell, see CellDirections).
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelBFSSolver implements SolverEngine {
+
+	// Frontiers smaller than this per thread are expanded on the calling
+	// thread only, as handing them to the pool would cost more than it saves
+	private static final int MIN_CELLS_PER_THREAD = 512;
+
+	private final int parallelism;
+
+	private List<FrontierSlice> slices; // null unless open
+	private ForkJoinPool pool; // null unless open with more than one thread
+
+	private Labyrinth lab;
+	private CellDirections parents; // only read for visited cells, so never cleared
+	private int[] frontier = new int[16];
+	private int frontierSize;
+
+	public ParallelBFSSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelBFSSolver(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public void open() {
+		if (this.slices != null)
+			return;
+		this.slices = new ArrayList<FrontierSlice>(this.parallelism);
+		for (int i = 0; i < this.parallelism; ++i)
+			this.slices.add(new FrontierSlice());
+		if (this.parallelism > 1)
+			this.pool = new ForkJoinPool(this.parallelism);
+	}
+
+	@Override
+	public void close() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			try {
+				this.pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.pool = null;
+		}
+		this.slices = null;
+	}
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		if (this.slices == null)
+			throw new IllegalStateException("ParallelBFSSolver is not open");
+		this.lab = lab;
+		Labyrinth.Grid grid = lab.grid;
+		int cells = (int) grid.cells();
+		if (this.parents == null || this.parents.size() != cells)
+			this.parents = new CellDirections(cells);
+		int start = grid.index(grid.start);
+		int end = grid.index(grid.end);
+		List<FrontierSlice> slices = this.slices;
+		SolverStats.Counts counts = new SolverStats.Counts();
+
+		lab.tryVisit(start);
+		counts.cellsVisited++;
+		this.frontier[0] = start;
+		this.frontierSize = 1;
+		int level = 0;
+		try {
+			while (!lab.visitedBefore(end)) {
+				if (this.frontierSize == 0)
+					return null; // All reachable cells visited: No solution exists
+				int sliceCount = Math.max(1, Math.min(this.parallelism, this.frontierSize / MIN_CELLS_PER_THREAD));
+				if (sliceCount == 1) {
+					slices.get(0).expand(grid, 0, this.frontierSize);
+				} else {
+					for (int i = 0; i < sliceCount; ++i) {
+						slices.get(i).from = (int) ((long) this.frontierSize * i / sliceCount);
+						slices.get(i).to = (int) ((long) this.frontierSize * (i + 1) / sliceCount);
+					}
+					for (Future<Void> slice : this.pool.invokeAll(slices.subList(0, sliceCount)))
+						slice.get();
+				}
+				nextFrontier(slices);
+				counts.cellsVisited += this.frontierSize;
+				++level;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while expanding level " + level, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Expanding level " + level + " failed", e.getCause());
+		} finally {
+			// Leave the buffers empty for the next solve, also after a failure
+			for (FrontierSlice slice : slices)
+				slice.next.clear();
+			lab.stats.add(counts);
+		}
+
+		// end was reached at distance level from start: Follow the parents back
+		Point[] path = new Point[level + 1];
+		int cell = end;
+		for (int i = level; i > 0; --i) {
+			path[i] = grid.point(cell);
+			cell = grid.neighbor(cell, this.parents.get(cell));
+		}
+		path[0] = grid.point(cell);
+		return path;
+	}
+
+	// Concatenates the buffers of all slices into the frontier
+	private void nextFrontier(List<FrontierSlice> slices) {
+		int size = 0;
+		for (FrontierSlice slice : slices)
+			size += slice.next.size();
+		if (size > this.frontier.length)
+			this.frontier = new int[Math.max(size, this.frontier.length * 2)];
+		int offset = 0;
+		for (FrontierSlice slice : slices) {
+			slice.next.copyTo(this.frontier, offset);
+			offset += slice.next.size();
+			slice.next.clear();
+		}
+		this.frontierSize = size;
+	}
+
+	/*
+	 * Expands the part [from, to) of the frontier into its own buffer of cells
+	 * for the next level.
+	 */
+	private final class FrontierSlice implements Callable<Void> {
+
+		private final IntStack next = new IntStack();
+		private int from;
+		private int to;
+
+		@Override
+		public Void call() {
+			expand(lab.grid, this.from, this.to);
+			return null;
+		}
+
+		void expand(Labyrinth.Grid grid, int from, int to) {
+			for (int i = from; i < to; ++i) {
+				int current = frontier[i];
+				for (Direction directionToNeighbor : Direction.VALUES) {
+					if (!grid.hasPassage(current, directionToNeighbor))
+						continue;
+					int neighbor = grid.neighbor(current, directionToNeighbor);
+					// Whichever thread visits neighbor first becomes its parent
+					if (lab.tryVisit(neighbor)) {
+						parents.set(neighbor, directionToNeighbor.opposite);
+						this.next.push(neighbor);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -1,51 +1,75 @@
 
 
-import java.util.ArrayDeque;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 
-public class ParallelSolver implements LabyrinthSolver {
+public class ParallelSolver implements SolverEngine {
 
 	private Labyrinth lab;
-	
-	private AtomicBoolean[][] visited;
-	
+
+	// Cancelled by the task that reaches end, so that all others stop
+	CancellationToken cancellation;
+	SolverStats stats;
+
+	private final int parallelism;
+
+	private ForkJoinPool fjk; // null unless open
+
 	public ParallelSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelSolver(int parallelism) {
 		this.lab = null;
+		this.parallelism = parallelism;
 	}
 
-	public void initializeDatastructure(Labyrinth lab) {
-		this.lab = lab;
-		this.visited = new AtomicBoolean[this.lab.grid.width][this.lab.grid.height];
-		for(int i = 0; i < this.lab.grid.width; i++) {
-			for(int j = 0; j < this.lab.grid.height; j++) {
-				this.visited[i][j] = new AtomicBoolean(false);
+	@Override
+	public void open() {
+		// ForkJoinTaskThreadPool bauen
+		if (this.fjk == null)
+			this.fjk = new ForkJoinPool(this.parallelism);
+	}
+
+	@Override
+	public void close() {
+		if (this.fjk != null) {
+			this.fjk.shutdown();
+			try {
+				this.fjk.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
+			this.fjk = null;
 		}
 	}
-	
+
 	@Override
 	public Point[] solve(Labyrinth lab) {
-		// ForkJoinTaskThreadPool bauen
-		ForkJoinPool fjk = new ForkJoinPool();
+		if (this.fjk == null)
+			throw new IllegalStateException("ParallelSolver is not open");
+		this.lab = lab;
+		this.cancellation = new CancellationToken();
+		this.stats = lab.stats;
+		long stealsBefore = this.fjk.getStealCount();
 
 		// Task initial invoken und auf Ergebnis warten
-		ParallelSolverTask<ArrayDeque<Point>> initialTask = new ParallelSolverTask<ArrayDeque<Point>>(lab.grid.start, lab.grid, new ArrayDeque<Point>(), this);
-		ArrayDeque<Point> result = fjk.invoke(initialTask);
-
-		return result.toArray(new Point[0]);
-	}
+		// (every task joins the tasks it forked, so the pool is idle afterwards)
+		ParallelSolverTask<Boolean> initialTask = new ParallelSolverTask<Boolean>(lab.grid.index(lab.grid.start), null, lab.grid, this);
+		Boolean found = this.fjk.invoke(initialTask);
+		SolverStats.Counts counts = new SolverStats.Counts();
+		counts.steals = this.fjk.getStealCount() - stealsBefore;
+		this.stats.add(counts);
 
-	public boolean hasPassage(Point current, Point neighbor) {
-		return this.lab.hasPassage(current, neighbor);
+		return found != null ? lab.pathTo(lab.grid.index(lab.grid.end)) : null;
 	}
 
-	public boolean tryVisit(Point current) {
-		return this.visited[current.x][current.y].compareAndSet(false, true);
+	public boolean tryVisit(int current, Direction cameFrom) {
+		return this.lab.tryVisit(current, cameFrom);
 	}
 
-	public boolean visitedBefore(Point neighbor) {
-		return this.visited[neighbor.x][neighbor.y].get();
+	public boolean visitedBefore(int neighbor) {
+		return this.lab.visitedBefore(neighbor);
 	}
 
 }
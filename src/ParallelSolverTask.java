@@ -1,6 +1,5 @@
 
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.ForkJoinTask;
@@ -9,27 +8,29 @@ import java.util.concurrent.RecursiveTask;
 public class ParallelSolverTask<T> extends RecursiveTask<T> {
 
 	private static final long serialVersionUID = 1L;
-	
+
 	private ParallelSolver dataHolder;
-	
+
 	private Labyrinth.Grid grid;
-	private Point startPoint;
-	private ArrayDeque<Point> pathSoFar;
-	
-	private Collection<ForkJoinTask<ArrayDeque<Point>>> forkedTasks;
+	private int startPoint;
+	private Direction cameFrom; // direction from startPoint back to the cell before it (null for start)
+
+	private Collection<ForkJoinTask<Boolean>> forkedTasks;
+
+	private final SolverStats.Counts counts = new SolverStats.Counts();
 
-	public ParallelSolverTask(Point startPoint, Labyrinth.Grid grid, ArrayDeque<Point> pathSoFar, ParallelSolver dataHolder) {
-		this.forkedTasks = new ArrayList<ForkJoinTask<ArrayDeque<Point>>>(); 
+	public ParallelSolverTask(int startPoint, Direction cameFrom, Labyrinth.Grid grid, ParallelSolver dataHolder) {
+		this.forkedTasks = new ArrayList<ForkJoinTask<Boolean>>();
 		this.startPoint = startPoint;
+		this.cameFrom = cameFrom;
 		this.grid = grid;
-		this.pathSoFar = pathSoFar;
 		this.dataHolder = dataHolder;
 	}
-	
-	private ArrayDeque<Point> collectResults() {
+
+	private Boolean collectResults() {
 		// I did not make it, check the others.
-		for(ForkJoinTask<ArrayDeque<Point>> fjt : this.forkedTasks) {
-			ArrayDeque<Point> result = fjt.join();
+		for(ForkJoinTask<Boolean> fjt : this.forkedTasks) {
+			Boolean result = fjt.join();
 			if(result != null) {
 				return result;
 			}
@@ -37,54 +38,78 @@ public class ParallelSolverTask<T> extends RecursiveTask<T> {
 		// Return their result if they made it, otherwise null.
 		return null;
 	}
-	
+
+	// Returns Boolean.TRUE if this task or one forked by it has reached end (see Labyrinth.pathTo()), else null
 	public T compute() {
-		Point current = this.startPoint;
-		Direction[] dirs = Direction.values(); // static data
-		while (!current.equals(this.grid.end)) {
+		try {
+			return this.search();
+		} finally {
+			this.dataHolder.stats.add(this.counts);
+		}
+	}
+
+	private T search() {
+		int current = this.startPoint;
+		Direction cameFrom = this.cameFrom;
+		int end = this.grid.index(this.grid.end);
+		// Check for cancellation on entry, then every CancellationToken.CHECK_INTERVAL cells
+		int stepsUntilCheck = 1;
+		while (true) {
+			if(--stepsUntilCheck == 0) {
+				if(this.dataHolder.cancellation.isCancelled()) {
+					// Somebody else made it, stop here.
+					return (T) this.collectResults();
+				}
+				stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+			}
 			// First, mark current field as visited!
-			if(this.dataHolder.tryVisit(current)) {
-				this.pathSoFar.add(current);
-			} else {
+			if(!this.dataHolder.tryVisit(current, cameFrom)) {
 				// If that failed, abort immediately.
+				this.counts.visitFailures++;
 				return (T) this.collectResults();
 			}
-			// Use first random unvisited neighbor as next cell, push others on the backtrack stack: 
-			Point next = null;
-			Collection<ForkJoinTask<ArrayDeque<Point>>> newTasks = new ArrayList<ForkJoinTask<ArrayDeque<Point>>>();
-			for (Direction directionToNeighbor: dirs) {
-				Point neighbor = current.getNeighbor(directionToNeighbor);
+			this.counts.cellsVisited++;
+			if (current == end) {
+				this.dataHolder.cancellation.cancel();
+				return (T) Boolean.TRUE;
+			}
+			// Use first random unvisited neighbor as next cell, push others on the backtrack stack:
+			int next = -1;
+			Direction nextCameFrom = null;
+			Collection<ForkJoinTask<Boolean>> newTasks = new ArrayList<ForkJoinTask<Boolean>>();
+			for (Direction directionToNeighbor: Direction.VALUES) {
 				// Fork for each direction available
-				if (this.dataHolder.hasPassage(current, neighbor) && !this.dataHolder.visitedBefore(neighbor)) {
-					if(next == null) {
+				if (!this.grid.hasPassage(current, directionToNeighbor))
+					continue;
+				int neighbor = this.grid.neighbor(current, directionToNeighbor);
+				if (!this.dataHolder.visitedBefore(neighbor)) {
+					if(next == -1) {
 						// I go this way
 						next = neighbor;
+						nextCameFrom = directionToNeighbor.opposite;
 					} else {
-						// Fork for that way
-						ForkJoinTask<ArrayDeque<Point>> neighbourTask = new ParallelSolverTask<ArrayDeque<Point>>(neighbor, this.grid, this.pathSoFar.clone(), this.dataHolder);
+						// Fork for that way (sharing the path so far, see Labyrinth.pathTo())
+						ForkJoinTask<Boolean> neighbourTask = new ParallelSolverTask<Boolean>(neighbor, directionToNeighbor.opposite, this.grid, this.dataHolder);
 						newTasks.add(neighbourTask);
 					}
 				}
 			}
 			if(newTasks.size() > 0) {
 				// Fork all the tasks!
+				this.counts.forks += newTasks.size();
 				ForkJoinTask.invokeAll(newTasks);
 				this.forkedTasks.addAll(newTasks);
 			}
 			// Advance to next cell, if any:
-			if (next != null) {
-				// DEBUG System.out.println("Advancing from " + current + " to " + next);
+			if (next != -1) {
 				current = next;
+				cameFrom = nextCameFrom;
 			} else {
 				// No where to go, we did not make it! :-(
 				// No result -> return null or so.
 				return (T) this.collectResults();
 			}
 		}
-		this.pathSoFar.addLast(current);
-		 // Point[0] is only for making the return value have type Point[] (and not Object[]):
-		//return pathSoFar.toArray(new Point[0]); 
-		return (T) this.pathSoFar;
 	}
 
 }
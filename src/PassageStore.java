@@ -0,0 +1,18 @@
+/*
+ * Storage of the passages of all cells of a Labyrinth.Grid (see the comment
+ * at Grid.passages for the meaning of the bits), addressed by cell index.
+ * Implementations differ in where the cells are kept: on the Java heap
+ * (HeapPassageStore) or directly in a memory-mapped grid file
+ * (MappedPassageStore).
+ */
+
+public interface PassageStore {
+
+	long cells();
+
+	// The four passage bits of a cell
+	int get(long cell);
+
+	void set(long cell, int passages);
+
+}
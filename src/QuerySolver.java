@@ -0,0 +1,134 @@
+/*
+ * Answers point-to-point queries against a shared grid: solve(grid, from, to)
+ * finds a path between any two cells without changing the grid, so any
+ * number of threads may query the same grid concurrently. All search state of
+ * a query (visited cells, path and backtracking stack) is taken from a pool
+ * and returned to it afterwards, so queries do not allocate state of the size
+ * of the grid once the pool holds one state per concurrent query.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public final class QuerySolver {
+
+	private final ConcurrentLinkedQueue<SearchState> pool = new ConcurrentLinkedQueue<SearchState>();
+
+	/**
+	 * @return A path from from to to (both inclusive) through grid, which must
+	 *         not have more than Labyrinth.MAX_INT_INDEXED_CELLS cells, or null
+	 *         if no such path exists
+	 */
+	public Point[] solve(Labyrinth.Grid grid, Point from, Point to) {
+		if (!grid.isIntIndexed())
+			throw new IllegalArgumentException("Grid with " + grid.cells() + " cells is too large for queries");
+		checkInGrid(grid, from);
+		checkInGrid(grid, to);
+		SearchState state = acquire((int) grid.cells());
+		try {
+			return state.solve(grid, grid.index(from), grid.index(to));
+		} finally {
+			state.reset();
+			pool.offer(state);
+		}
+	}
+
+	private static void checkInGrid(Labyrinth.Grid grid, Point p) {
+		if (p.x < 0 || p.x >= grid.width || p.y < 0 || p.y >= grid.height)
+			throw new IllegalArgumentException(p + " is not within the " + grid.width + "x" + grid.height + " grid");
+	}
+
+	// A pooled state for a grid of this size, or a new one
+	private SearchState acquire(int cells) {
+		SearchState state;
+		while ((state = pool.poll()) != null) {
+			if (state.cells == cells)
+				return state;
+			// Left over from queries on a grid of another size: drop it
+		}
+		return new SearchState(cells);
+	}
+
+	/*
+	 * The state of one query at a time, i.e. never used by two threads at once.
+	 * Visited cells are a plain bit set that remembers which of its words have
+	 * been changed, so reset() takes time proportional to the cells visited
+	 * rather than to the size of the grid.
+	 */
+	private static final class SearchState {
+
+		final int cells;
+		private final long[] visited;
+		private final IntStack dirtyWords = new IntStack();
+		private final IntStack pathSoFar = new IntStack();
+		private final IntStack backtrackStack = new IntStack();
+
+		SearchState(int cells) {
+			this.cells = cells;
+			this.visited = new long[(cells + 63) >>> 6];
+		}
+
+		// Depth-first search like NonParallelSolver
+		Point[] solve(Labyrinth.Grid grid, int current, int end) {
+			while (current != end) {
+				int next = -1;
+				visit(current);
+
+				// Use first unvisited neighbor as next cell, push others on the backtrack stack:
+				for (Direction directionToNeighbor : Direction.VALUES) {
+					if (!grid.hasPassage(current, directionToNeighbor))
+						continue;
+					int neighbor = grid.neighbor(current, directionToNeighbor);
+					if (!visitedBefore(neighbor)) {
+						if (next == -1) // 1st unvisited neighbor
+							next = neighbor;
+						else { // 2nd or higher unvisited neighbor: Save neighbor as starting cell for a later backtracking
+							backtrackStack.push(neighbor);
+							backtrackStack.push(pathSoFar.size() + 1); // path length up to current, pushed below
+						}
+					}
+				}
+				// Advance to next cell, if any:
+				if (next != -1) {
+					pathSoFar.push(current);
+					current = next;
+				} else {
+					// current has no unvisited neighbor: Backtrack, if possible
+					if (backtrackStack.isEmpty())
+						return null; // No more backtracking avaible: No solution exists
+
+					// Backtrack: Continue with cell saved at latest branching point:
+					int pathLength = backtrackStack.pop();
+					current = backtrackStack.pop();
+					// Remove the dead end from the top of pathSoFar, i.e. all cells after the branching point, at once:
+					pathSoFar.truncate(pathLength);
+				}
+			}
+			pathSoFar.push(current);
+			return grid.toPoints(pathSoFar);
+		}
+
+		private boolean visitedBefore(int cell) {
+			return (visited[cell >>> 6] & (1L << cell)) != 0;
+		}
+
+		private void visit(int cell) {
+			long word = visited[cell >>> 6];
+			if (word == 0)
+				dirtyWords.push(cell >>> 6);
+			visited[cell >>> 6] = word | (1L << cell);
+		}
+
+		void reset() {
+			if (dirtyWords.size() > visited.length / 8) {
+				Arrays.fill(visited, 0L); // faster than one by one for many words
+			} else {
+				while (!dirtyWords.isEmpty())
+					visited[dirtyWords.pop()] = 0L;
+			}
+			dirtyWords.clear();
+			pathSoFar.clear();
+			backtrackStack.clear();
+		}
+	}
+}
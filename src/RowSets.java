@@ -0,0 +1,78 @@
+/*
+ * Union-find for algorithms that sweep a grid row by row (see
+ * StreamingGenerator and StreamingSolver), so they only need memory for one
+ * or two rows: The elements are the ints 0 to size - 1, typically the sets
+ * of cells of the row before, followed by the cells of the current row.
+ * Once the row is done, number() gives the sets of the current row small
+ * numbers, which become the elements for the next row. find() halves paths,
+ * which is enough for sets of this size.
+ */
+
+import java.util.Arrays;
+
+public final class RowSets {
+
+	private final int[] parents;
+	private final int[] numbers; // per root, see number()
+	private int size;
+
+	// For up to capacity elements
+	public RowSets(int capacity) {
+		this.parents = new int[capacity];
+		this.numbers = new int[capacity];
+	}
+
+	// Makes the elements 0 to size - 1 sets of their own
+	public void reset(int size) {
+		this.size = size;
+		for (int i = 0; i < size; ++i)
+			parents[i] = i;
+	}
+
+	public int find(int element) {
+		while (parents[element] != element) {
+			parents[element] = parents[parents[element]];
+			element = parents[element];
+		}
+		return element;
+	}
+
+	/**
+	 * @return true if a and b were in different sets, which are now one
+	 */
+	public boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		parents[a] = b;
+		return true;
+	}
+
+	/**
+	 * Numbers the sets of the elements first to first + count - 1 from 0 on,
+	 * in the order in which they occur there, and stores the number of each
+	 * of these elements' sets in numbers.
+	 *
+	 * @return The number of sets numbered
+	 */
+	public int number(int first, int count, int[] numbers) {
+		Arrays.fill(this.numbers, 0, size, -1);
+		int sets = 0;
+		for (int i = 0; i < count; ++i) {
+			int root = find(first + i);
+			if (this.numbers[root] < 0)
+				this.numbers[root] = sets++;
+			numbers[i] = this.numbers[root];
+		}
+		return sets;
+	}
+
+	/**
+	 * @return The number given to the set of element by the latest number(),
+	 *         or -1 if none of the elements numbered is in that set
+	 */
+	public int numberOf(int element) {
+		return numbers[find(element)];
+	}
+}
@@ -0,0 +1,19 @@
+/*
+ * A solver that keeps its threads, and data structures sized for the
+ * labyrinth, across solves: open() starts the threads, any number of solve()
+ * calls (one at a time) reuse them, and close() stops them again. Each solve()
+ * only resets the state touched by the solve() before it.
+ */
+public interface SolverEngine extends LabyrinthSolver, AutoCloseable {
+
+	// Does nothing if already open
+	public void open();
+
+	/**
+	 * Stops the threads, waiting for them to finish; does nothing if not open.
+	 * The engine may be opened again afterwards.
+	 */
+	@Override
+	public void close();
+
+}
@@ -0,0 +1,173 @@
+/*
+ * What a solver did during one solve(), to see why it is slow: Each Labyrinth
+ * has one, which Labyrinth.solve() resets and times, and to which the solver
+ * adds its counts. Threads count in a Counts object of their own (e.g. per
+ * task or worker thread), which costs next to nothing while searching, and
+ * add it here whenever a task or piece of work is done; the counters are
+ * LongAdders, so threads adding at the same time do not contend. They can be
+ * read while a solve is running, e.g. through JMX (see register()).
+ *
+ * Not every solver has every counter: The ForkJoinPool-based solvers take
+ * their steals from the pool (including those for other solves running on
+ * the same pool at the same time), and only MultithreadBasedSolver and
+ * TileOwnershipSolver have idle time. JunctionGraphSolver counts the junctions
+ * it visits as cells, TileOwnershipSolver the messages it posts as forks.
+ * DistributedSolver only counts the crossings between its processes, as forks,
+ * and StreamingSolver counts the cells of all rows its first pass reads.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class SolverStats implements SolverStatsMBean {
+
+	/*
+	 * The counts of one thread, added to a SolverStats by add(counts), which
+	 * resets them.
+	 */
+	public static final class Counts {
+		public long cellsVisited;
+		public long visitFailures; // tryVisit() calls lost to another thread
+		public long forks; // tasks forked or work shared
+		public long steals;
+		public long backtracks;
+		public long pathTrimSteps; // cells removed from a path on backtracking
+		public long idleNanos; // time spent waiting for work
+	}
+
+	private final LongAdder cellsVisited = new LongAdder();
+	private final LongAdder visitFailures = new LongAdder();
+	private final LongAdder forks = new LongAdder();
+	private final LongAdder steals = new LongAdder();
+	private final LongAdder backtracks = new LongAdder();
+	private final LongAdder pathTrimSteps = new LongAdder();
+	private final LongAdder idleNanos = new LongAdder();
+
+	private volatile String solver = "";
+	private volatile long startNanos;
+	private volatile long solveNanos; // -1 while solving
+
+	// Resets all counters for a new solve by the given solver, which starts now
+	public void start(LabyrinthSolver solver) {
+		this.solver = solver.getClass().getSimpleName();
+		cellsVisited.reset();
+		visitFailures.reset();
+		forks.reset();
+		steals.reset();
+		backtracks.reset();
+		pathTrimSteps.reset();
+		idleNanos.reset();
+		solveNanos = -1;
+		startNanos = System.nanoTime();
+	}
+
+	public void stop() {
+		solveNanos = System.nanoTime() - startNanos;
+	}
+
+	public void add(Counts counts) {
+		if (counts.cellsVisited != 0)
+			cellsVisited.add(counts.cellsVisited);
+		if (counts.visitFailures != 0)
+			visitFailures.add(counts.visitFailures);
+		if (counts.forks != 0)
+			forks.add(counts.forks);
+		if (counts.steals != 0)
+			steals.add(counts.steals);
+		if (counts.backtracks != 0)
+			backtracks.add(counts.backtracks);
+		if (counts.pathTrimSteps != 0)
+			pathTrimSteps.add(counts.pathTrimSteps);
+		if (counts.idleNanos != 0)
+			idleNanos.add(counts.idleNanos);
+		counts.cellsVisited = 0;
+		counts.visitFailures = 0;
+		counts.forks = 0;
+		counts.steals = 0;
+		counts.backtracks = 0;
+		counts.pathTrimSteps = 0;
+		counts.idleNanos = 0;
+	}
+
+	/**
+	 * Makes these statistics readable through JMX (e.g. with jconsole) as
+	 * ParallelLabyrinth:type=SolverStats,name=<name>.
+	 */
+	public void register(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName("ParallelLabyrinth:type=SolverStats,name=" + ObjectName.quote(name)));
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register solver statistics " + name, e);
+		}
+	}
+
+	@Override
+	public String getSolver() {
+		return solver;
+	}
+
+	@Override
+	public double getSolveMillis() {
+		long nanos = solveNanos;
+		return (nanos == -1 ? System.nanoTime() - startNanos : nanos) / 1e6;
+	}
+
+	@Override
+	public boolean isSolving() {
+		return solveNanos == -1;
+	}
+
+	@Override
+	public long getCellsVisited() {
+		return cellsVisited.sum();
+	}
+
+	@Override
+	public long getVisitFailures() {
+		return visitFailures.sum();
+	}
+
+	@Override
+	public long getForks() {
+		return forks.sum();
+	}
+
+	@Override
+	public long getSteals() {
+		return steals.sum();
+	}
+
+	@Override
+	public long getBacktracks() {
+		return backtracks.sum();
+	}
+
+	@Override
+	public long getPathTrimSteps() {
+		return pathTrimSteps.sum();
+	}
+
+	@Override
+	public double getIdleMillis() {
+		return idleNanos.sum() / 1e6;
+	}
+
+	// All counters as one line of JSON
+	public String toJson() {
+		return String.format(Locale.ROOT,
+				"{\"solver\":\"%s\",\"solveMillis\":%.3f,\"cellsVisited\":%d,\"visitFailures\":%d,\"forks\":%d,"
+						+ "\"steals\":%d,\"backtracks\":%d,\"pathTrimSteps\":%d,\"idleMillis\":%.3f}",
+				getSolver(), getSolveMillis(), getCellsVisited(), getVisitFailures(), getForks(), getSteals(),
+				getBacktracks(), getPathTrimSteps(), getIdleMillis());
+	}
+
+	@Override
+	public String toString() {
+		return toJson();
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * The JMX view of SolverStats (see there).
+ */
+public interface SolverStatsMBean {
+
+	public String getSolver();
+
+	// Up to now while solving
+	public double getSolveMillis();
+
+	public boolean isSolving();
+
+	public long getCellsVisited();
+
+	public long getVisitFailures();
+
+	public long getForks();
+
+	public long getSteals();
+
+	public long getBacktracks();
+
+	public long getPathTrimSteps();
+
+	public double getIdleMillis();
+
+}
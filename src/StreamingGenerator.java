@@ -0,0 +1,128 @@
+/*
+ * Generates a labyrinth row by row with Eller's algorithm
+ * (www.astrolog.org/labyrnth/algrithm.htm) and writes each row to a grid file
+ * (see GridFile) as soon as it is done, so only two rows are ever in memory:
+ * A labyrinth may have as many rows as the file format allows, with memory
+ * for its width only.
+ *
+ * Each cell of the current row is in a set of cells connected through the
+ * rows above (see RowSets). Adjacent cells of different sets are joined at
+ * random, and each set continues into the next row below at least one random
+ * cell, so that all cells end up connected once the last row joins all sets.
+ * Without cycles, the result is a perfect labyrinth; with the cycle creation
+ * probability, cells already connected get a passage anyway (compare
+ * LabyrinthGenerator). The same seed always yields the same labyrinth.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+public final class StreamingGenerator {
+
+	// Probability to join two adjacent cells of different sets, and to
+	// continue a set downwards at a cell besides the one it has to
+	private static final double JOIN_PROBABILITY = 0.5;
+	private static final double DOWN_PROBABILITY = 0.5;
+
+	private final long seed;
+	private final double cycleCreationProbability;
+
+	public StreamingGenerator(long seed, double cycleCreationProbability) {
+		this.seed = seed;
+		this.cycleCreationProbability = cycleCreationProbability;
+	}
+
+	/**
+	 * Writes a new labyrinth of the given size, start and end to file.
+	 */
+	public void generate(Path file, int width, int height, Point start, Point end) throws IOException {
+		SplittableRandom random = new SplittableRandom(seed);
+		RowSets sets = new RowSets(2 * width);
+		int[] above = new int[width]; // set of each cell of the row before
+		int[] row = new int[width]; // set of each cell of the current row
+		boolean[] downAbove = new boolean[width]; // passages from the row before down into this one
+		boolean[] down = new boolean[width];
+		int[] passages = new int[width];
+		int[] cellsSeen = new int[width]; // per set
+		int[] downCell = new int[width]; // per set, the cell it has to continue at
+		int setsAbove = 0;
+		try (GridFile.Writer writer = GridFile.writer(file, width, height, start, end)) {
+			for (int y = 0; y < height; ++y) {
+				boolean lastRow = y == height - 1;
+				// Elements: the sets of the row before, then the cells of this row
+				sets.reset(setsAbove + width);
+				for (int x = 0; x < width; ++x) {
+					passages[x] = 0;
+					if (downAbove[x]) {
+						passages[x] |= Direction.N.bit;
+						sets.union(setsAbove + x, above[x]);
+					}
+				}
+				for (int x = 1; x < width; ++x) {
+					boolean join;
+					if (sets.find(setsAbove + x - 1) != sets.find(setsAbove + x))
+						join = lastRow || random.nextDouble() < JOIN_PROBABILITY;
+					else
+						join = random.nextDouble() < cycleCreationProbability;
+					if (join) {
+						sets.union(setsAbove + x - 1, setsAbove + x);
+						passages[x - 1] |= Direction.E.bit;
+						passages[x] |= Direction.W.bit;
+					}
+				}
+				int setCount = sets.number(setsAbove, width, row);
+				if (!lastRow) {
+					// Pick the one cell each set has to continue at, uniformly
+					// among the set's cells (reservoir sampling)
+					for (int i = 0; i < setCount; ++i)
+						cellsSeen[i] = 0;
+					for (int x = 0; x < width; ++x)
+						if (random.nextInt(++cellsSeen[row[x]]) == 0)
+							downCell[row[x]] = x;
+					for (int x = 0; x < width; ++x) {
+						down[x] = downCell[row[x]] == x || random.nextDouble() < DOWN_PROBABILITY;
+						if (down[x])
+							passages[x] |= Direction.S.bit;
+					}
+				}
+				for (int x = 0; x < width; ++x)
+					writer.write(passages[x]);
+				int[] rowDone = above;
+				above = row;
+				row = rowDone;
+				boolean[] downDone = downAbove;
+				downAbove = down;
+				down = downDone;
+				setsAbove = setCount;
+			}
+		}
+	}
+
+	/**
+	 * Generates a labyrinth laid out like in Labyrinth.makeAndSaveLabyrinth()
+	 * (start in the centre, end in a random corner) into a grid file.
+	 *
+	 * @param args
+	 *            The grid file, width and height, and optionally a seed (a
+	 *            random seed is used and printed otherwise)
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args[0]);
+		int width = Integer.parseInt(args[1]);
+		int height = Integer.parseInt(args[2]);
+		long seed = args.length >= 4 ? Long.parseLong(args[3]) : new Random().nextLong();
+		System.out.println("Labyrinth seed: " + seed);
+		Random random = new Random(seed);
+		Point start = new Point(width / 2, height / 2);
+		int zeroToThree = random.nextInt(4);
+		Point end = new Point(zeroToThree / 2 == 0 ? 0 : width - 1, zeroToThree % 2 == 0 ? 0 : height - 1);
+		long startTime = System.currentTimeMillis();
+		new StreamingGenerator(random.nextLong(), Labyrinth.CYCLE_CREATION_PROBABILITY).generate(file, width, height,
+				start, end);
+		System.out.println("Generated labyrinth of size " + width + "x" + height + " into " + file + " in "
+				+ (System.currentTimeMillis() - startTime) + "ms.");
+	}
+}
@@ -0,0 +1,406 @@
+/*
+ * A solver that reads the grid row by row and needs memory for a few rows
+ * only (plus the solution path), so it can solve labyrinths as large as a
+ * grid file allows, e.g. from StreamingGenerator, mapped by GridFile.map().
+ *
+ * The first pass streams the rows from top to bottom and keeps, with a
+ * union-find over the current row (see RowSets), which cells of the row are
+ * connected through the rows above. Passages that would close a cycle are
+ * ignored, so the passages used form a forest, and a path is unique. For
+ * each row, the numbers of the sets of its cells (the path hints) are
+ * written to a scratch file. The pass stops at the first row at which start
+ * and end are connected.
+ *
+ * The second pass reads the hints back from that row up to the first one. At
+ * each row, the path (or the parts of it still to be found) runs along
+ * horizontal runs of the row, and between them dips into the sets of the row
+ * above, through which it is to be continued one row further up. As the
+ * passages used form a forest, each of these parts is found by a search
+ * among the O(width) runs and sets of the row, and no cell is part of the
+ * path twice, so there are at most width / 2 parts per row.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class StreamingSolver implements LabyrinthSolver {
+
+	// Ends of a part of the path that are not in the row of the part (but
+	// somewhere above it): start or end of the labyrinth. Other ends are the
+	// x of a cell in that row.
+	private static final int START = -1;
+	private static final int END = -2;
+
+	private final Path scratchDirectory;
+
+	// Per solve
+	private Labyrinth.Grid grid;
+	private int width;
+	private int startY;
+	private int endY;
+	private FileChannel hints; // per row: width set numbers, then those of the sets of start and end (or -1)
+	private ByteBuffer hint;
+	private RowSets sets;
+	private int[] above; // the set of each cell of the row before (see hints)
+	private int setsAbove;
+	private int startSetAbove;
+	private int endSetAbove;
+	// Which of the passages of the current row are used (see connect())
+	private boolean[] upUsed;
+	private boolean[] leftUsed;
+
+	// Scratch files go to the default temporary directory
+	public StreamingSolver() {
+		this(Paths.get(System.getProperty("java.io.tmpdir")));
+	}
+
+	public StreamingSolver(Path scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+	}
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		SolverStats.Counts counts = new SolverStats.Counts();
+		try {
+			return solve(lab.grid, counts);
+		} finally {
+			lab.stats.add(counts);
+		}
+	}
+
+	/**
+	 * Like solve(lab), but for a grid of any size, also one with too many
+	 * cells for a Labyrinth, and without the per-cell state of a Labyrinth.
+	 * Adds to counts what it did.
+	 */
+	public Point[] solve(Labyrinth.Grid grid, SolverStats.Counts counts) {
+		if (grid.start.equals(grid.end))
+			return new Point[] { grid.start };
+		this.grid = grid;
+		this.width = grid.width;
+		this.startY = grid.start.y;
+		this.endY = grid.end.y;
+		this.sets = new RowSets(2 * this.width);
+		this.above = new int[this.width];
+		this.upUsed = new boolean[this.width];
+		this.leftUsed = new boolean[this.width];
+		this.hint = ByteBuffer.allocate((this.width + 2) * 4);
+		Path file = null;
+		try {
+			file = Files.createTempFile(this.scratchDirectory, "hints", ".tmp");
+			this.hints = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+			int connectedY = sweepDown(counts);
+			return connectedY < 0 ? null : sweepUp(connectedY);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot use scratch file " + file, e);
+		} finally {
+			try {
+				if (this.hints != null)
+					this.hints.close();
+			} catch (IOException e) {
+				// Deleted on close anyway
+			}
+			this.hints = null;
+			this.grid = null;
+		}
+	}
+
+	/*
+	 * First pass: Writes the hints of each row until start and end are
+	 * connected. Returns the row at which they are, or -1 if they are not
+	 * connected at all.
+	 */
+	private int sweepDown(SolverStats.Counts counts) throws IOException {
+		int[] row = new int[this.width];
+		this.setsAbove = 0;
+		this.startSetAbove = -1;
+		this.endSetAbove = -1;
+		for (int y = 0; y < this.grid.height; ++y) {
+			connect(y);
+			counts.cellsVisited += this.width;
+			int setCount = this.sets.number(this.setsAbove, this.width, row);
+			// Elements of start and end, if they are in this row or above
+			int startElement = y == this.startY ? this.setsAbove + this.grid.start.x
+					: y > this.startY ? this.startSetAbove : -1;
+			int endElement = y == this.endY ? this.setsAbove + this.grid.end.x
+					: y > this.endY ? this.endSetAbove : -1;
+			if (startElement >= 0 && endElement >= 0 && this.sets.find(startElement) == this.sets.find(endElement))
+				return y;
+			int startSet = startElement >= 0 ? this.sets.numberOf(startElement) : -1;
+			int endSet = endElement >= 0 ? this.sets.numberOf(endElement) : -1;
+			// Start or end in a part cut off from all rows below
+			if ((y >= this.startY && startSet < 0) || (y >= this.endY && endSet < 0))
+				return -1;
+			writeHint(y, row, startSet, endSet);
+			int[] rowDone = this.above;
+			this.above = row;
+			row = rowDone;
+			this.setsAbove = setCount;
+			this.startSetAbove = startSet;
+			this.endSetAbove = endSet;
+		}
+		return -1;
+	}
+
+	/*
+	 * Joins the sets of the cells of row y with each other and with those of
+	 * the row before (elements 0 to setsAbove - 1 in sets, with the cells of
+	 * row y after them), and records which passages it has used, i.e. those
+	 * that have not closed a cycle. Done the same way in both passes, so that
+	 * they use the same passages.
+	 */
+	private void connect(int y) {
+		RowSets sets = this.sets;
+		int setsAbove = this.setsAbove;
+		long firstCell = this.grid.cellIndex(0, y);
+		sets.reset(setsAbove + this.width);
+		for (int x = 0; x < this.width; ++x)
+			this.upUsed[x] = y > 0 && this.grid.hasPassage(firstCell + x, Direction.N)
+					&& sets.union(setsAbove + x, this.above[x]);
+		for (int x = 1; x < this.width; ++x)
+			this.leftUsed[x] = this.grid.hasPassage(firstCell + x, Direction.W)
+					&& sets.union(setsAbove + x - 1, setsAbove + x);
+	}
+
+	/*
+	 * A part of the path from one end to another within row y and the rows
+	 * above, once found a sequence of horizontal walks along row y and parts
+	 * in row y - 1.
+	 */
+	private static final class Part {
+		final int y;
+		final int from; // x, START or END, see there
+		final int to;
+		// Pairs (x from, x to) for walks, or -1 - index in parts for parts
+		final IntStack steps = new IntStack(4);
+
+		Part(int y, int from, int to) {
+			this.y = y;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/*
+	 * Second pass: Finds the path from start to end, which runs through rows
+	 * up to connectedY, from that row up.
+	 */
+	private Point[] sweepUp(int connectedY) throws IOException {
+		ArrayList<Part> parts = new ArrayList<Part>();
+		parts.add(new Part(connectedY, end(START, connectedY), end(END, connectedY)));
+		ArrayList<Part> rowParts = new ArrayList<Part>();
+		rowParts.add(parts.get(0));
+		int[] runs = new int[this.width]; // the run of each cell of the row
+		int[] nodeParents = new int[2 * this.width]; // per node of the search: x of the passage back
+		int[] searched = new int[2 * this.width]; // per node: the last search that reached it
+		int[] queue = new int[2 * this.width];
+		int[] edges = new int[2 * this.width + 1]; // per node: start of its passages in passages
+		int[] passages = new int[2 * this.width]; // x of each vertical passage used, per node
+		int[] edgeCounts = new int[2 * this.width + 1];
+		int search = 0;
+		for (int y = connectedY; !rowParts.isEmpty(); --y) {
+			// Nodes: the sets of the row above, then the runs of row y, joined
+			// by the vertical passages used
+			if (y > 0) {
+				readHint(y - 1);
+			} else {
+				this.setsAbove = 0;
+				this.startSetAbove = -1;
+				this.endSetAbove = -1;
+			}
+			connect(y);
+			int setsAbove = this.setsAbove;
+			int nodes = setsAbove;
+			for (int x = 0; x < this.width; ++x) {
+				if (x == 0 || !this.leftUsed[x])
+					++nodes;
+				runs[x] = nodes - 1;
+			}
+			Arrays.fill(edgeCounts, 0, nodes + 1, 0);
+			for (int x = 0; x < this.width; ++x) {
+				if (this.upUsed[x]) {
+					++edgeCounts[this.above[x]];
+					++edgeCounts[runs[x]];
+				}
+			}
+			edges[0] = 0;
+			for (int node = 0; node < nodes; ++node)
+				edges[node + 1] = edges[node] + edgeCounts[node];
+			for (int x = 0; x < this.width; ++x) {
+				if (this.upUsed[x]) {
+					passages[edges[this.above[x]] + --edgeCounts[this.above[x]]] = x;
+					passages[edges[runs[x]] + --edgeCounts[runs[x]]] = x;
+				}
+			}
+
+			ArrayList<Part> partsAbove = new ArrayList<Part>();
+			for (Part part : rowParts) {
+				// Search the forest of nodes from the node of part.to back to
+				// the node of part.from, then follow the passages found forward
+				int from = node(part.from, runs);
+				int to = node(part.to, runs);
+				++search;
+				int head = 0;
+				int tail = 0;
+				queue[tail++] = to;
+				searched[to] = search;
+				while (searched[from] != search) {
+					if (head == tail)
+						throw new IllegalStateException("Lost the path in row " + y);
+					int node = queue[head++];
+					for (int i = edges[node]; i < edges[node + 1]; ++i) {
+						int x = passages[i];
+						int neighbor = node < setsAbove ? runs[x] : this.above[x];
+						if (searched[neighbor] != search) {
+							searched[neighbor] = search;
+							nodeParents[neighbor] = x;
+							queue[tail++] = neighbor;
+						}
+					}
+				}
+				int x = part.from; // where the path is now, in row y or above
+				for (int node = from; node != to;) {
+					int passage = nodeParents[node];
+					if (node < setsAbove) {
+						// From x above through the set to the passage down
+						partsAbove.add(above(part, y, x, passage, parts));
+						node = runs[passage];
+					} else {
+						walk(part, x, passage);
+						node = this.above[passage];
+					}
+					x = passage;
+				}
+				if (to < setsAbove)
+					partsAbove.add(above(part, y, x, part.to, parts));
+				else
+					walk(part, x, part.to);
+			}
+			rowParts = partsAbove;
+		}
+		return path(parts);
+	}
+
+	// The node of the search in sweepUp() of an end of a part
+	private int node(int end, int[] runs) {
+		if (end >= 0)
+			return runs[end];
+		int set = end == START ? this.startSetAbove : this.endSetAbove;
+		if (set < 0)
+			throw new IllegalStateException("Lost " + (end == START ? "start" : "end") + " above a part of the path");
+		return set;
+	}
+
+	// An end of a part in row y: the x of start or end if in row y, else START or END
+	private int end(int end, int y) {
+		Point p = end == START ? this.grid.start : this.grid.end;
+		return p.y == y ? p.x : end;
+	}
+
+	private static void walk(Part part, int fromX, int toX) {
+		part.steps.push(fromX);
+		part.steps.push(toX);
+	}
+
+	// Adds a new part from to to in the row above part's, as the next step of part
+	private Part above(Part part, int y, int from, int to, ArrayList<Part> parts) {
+		Part above = new Part(y - 1, from >= 0 ? from : end(from, y - 1), to >= 0 ? to : end(to, y - 1));
+		part.steps.push(-1 - parts.size());
+		parts.add(above);
+		return above;
+	}
+
+	// Puts the parts together, from the first one on
+	private Point[] path(ArrayList<Part> parts) {
+		ArrayList<Point> path = new ArrayList<Point>();
+		// Pairs (index of part, next step), as parts nest as deep as there are rows
+		IntStack stack = new IntStack();
+		stack.push(0);
+		stack.push(0);
+		while (!stack.isEmpty()) {
+			int step = stack.pop();
+			int index = stack.pop();
+			Part part = parts.get(index);
+			if (step == part.steps.size())
+				continue;
+			int value = part.steps.get(step);
+			if (value < 0) {
+				// The part above first, then the rest of this one
+				stack.push(index);
+				stack.push(step + 1);
+				stack.push(-1 - value);
+				stack.push(0);
+			} else {
+				int toX = part.steps.get(step + 1);
+				int dx = toX >= value ? 1 : -1;
+				for (int x = value; x != toX + dx; x += dx)
+					path.add(new Point(x, part.y));
+				stack.push(index);
+				stack.push(step + 2);
+			}
+		}
+		return path.toArray(new Point[path.size()]);
+	}
+
+	private void writeHint(int y, int[] row, int startSet, int endSet) throws IOException {
+		this.hint.clear();
+		for (int x = 0; x < this.width; ++x)
+			this.hint.putInt(row[x]);
+		this.hint.putInt(startSet).putInt(endSet).flip();
+		long position = (long) y * this.hint.capacity();
+		while (this.hint.hasRemaining())
+			position += this.hints.write(this.hint, position);
+	}
+
+	// Makes the hints of row y those of the row above the current one
+	private void readHint(int y) throws IOException {
+		this.hint.clear();
+		long position = (long) y * this.hint.capacity();
+		while (this.hint.hasRemaining())
+			if (this.hints.read(this.hint, position + this.hint.position()) < 0)
+				throw new IOException("Hints of row " + y + " are missing");
+		this.hint.flip();
+		int sets = 0;
+		for (int x = 0; x < this.width; ++x) {
+			this.above[x] = this.hint.getInt();
+			sets = Math.max(sets, this.above[x] + 1);
+		}
+		this.setsAbove = sets;
+		this.startSetAbove = this.hint.getInt();
+		this.endSetAbove = this.hint.getInt();
+	}
+
+	/**
+	 * Solves the labyrinth in a grid file, e.g. one from StreamingGenerator.
+	 *
+	 * @param args
+	 *            The grid file (see GridFile)
+	 */
+	public static void main(String[] args) throws IOException {
+		// No Labyrinth, which would need state for every cell
+		Labyrinth.Grid grid = GridFile.map(Paths.get(args[0]));
+		System.out.println("Labyrinth dimensions: " + grid.width + "x" + grid.height);
+		SolverStats.Counts counts = new SolverStats.Counts();
+		long startTime = System.currentTimeMillis();
+		Point[] solution = new StreamingSolver().solve(grid, counts);
+		long millis = System.currentTimeMillis() - startTime;
+		System.out.println("Read " + counts.cellsVisited + " cells.");
+		if (solution == null) {
+			System.out.println("No solution, found in " + millis + "ms.");
+			return;
+		}
+		System.out.println("Computed streaming solution of length " + solution.length + " in " + millis + "ms.");
+		if (Labyrinth.checkSolution(grid, solution))
+			System.out.println("Solution correct :-)");
+		else
+			System.out.println("Solution incorrect :-(");
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * A parallel solver by domain decomposition: The grid is split into
+ * rectangular tiles, and each tile is owned by one thread, the only one to
+ * visit its cells. The owners therefore keep their visited state with plain,
+ * non-atomic reads and writes (tiles are a multiple of 64 cells wide and the
+ * state is stored row by row in 64-bit words, so no word is shared by two
+ * tiles). An owner explores a tile depth-first as far as its passages lead
+ * within the tile; each passage leading into another tile becomes a message
+ * to that tile's owner, which is all threads ever exchange: the cell and the
+ * direction back to where it was reached from. Each owner has a lock-free
+ * mailbox, so threads only contend when passages cross tile borders.
+ *
+ * The tiles are dealt to the owners round-robin, row by row, so every owner
+ * has tiles all over the grid and the owners share the work even though a
+ * search only reaches part of it. As messages are all an owner gets from the
+ * others, the owners could as well run in different processes.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public class TileOwnershipSolver implements SolverEngine {
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	private final int parallelism;
+	private final int tileWidth; // a multiple of 64, see above
+	private final int tileHeight;
+
+	private Owner[] owners; // null unless open
+
+	// Set by solve() for the workers, before they start on it
+	private Labyrinth lab;
+	private int stride; // width rounded up to a multiple of 64
+	private int tilesPerRow;
+	private long[] visited; // one bit per cell, at y * stride + x
+	private long[] cameFrom; // two bits per visited cell (Direction ordinal), never cleared
+	private CancellationToken cancellation;
+
+	// Per solve: Set by the owner reaching end before it cancels the solve
+	private volatile boolean found;
+	// Messages posted but not yet processed: Once there are none, no owner has
+	// work left, and there is no solution
+	private final AtomicLong pending = new AtomicLong();
+
+	// Guarded by this: The number of solves started, of owners not done with
+	// the current one yet, and whether the owners are to stop
+	private int solvesStarted;
+	private int busyOwners;
+	private boolean closed;
+
+	public TileOwnershipSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public TileOwnershipSolver(int parallelism) {
+		this(parallelism, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * @param tileSize
+	 *            Height of the tiles in cells; their width is this rounded up
+	 *            to a multiple of 64
+	 */
+	public TileOwnershipSolver(int parallelism, int tileSize) {
+		this.parallelism = parallelism;
+		this.tileWidth = (tileSize + 63) & ~63;
+		this.tileHeight = tileSize;
+	}
+
+	@Override
+	public void open() {
+		if (this.owners != null)
+			return;
+		synchronized (this) {
+			this.closed = false;
+			this.solvesStarted = 0;
+		}
+		this.owners = new Owner[this.parallelism];
+		for (int i = 0; i < this.parallelism; ++i)
+			this.owners[i] = new Owner(i);
+		for (Owner owner : this.owners)
+			owner.start();
+	}
+
+	@Override
+	public void close() {
+		if (this.owners == null)
+			return;
+		synchronized (this) {
+			this.closed = true;
+			this.notifyAll();
+		}
+		try {
+			for (Owner owner : this.owners)
+				owner.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.owners = null;
+	}
+
+	@Override
+	public Point[] solve(Labyrinth lab) {
+		if (this.owners == null)
+			throw new IllegalStateException("TileOwnershipSolver is not open");
+		Labyrinth.Grid grid = lab.grid;
+		this.lab = lab;
+		prepare(grid);
+		this.found = false;
+		this.pending.set(1);
+		this.cancellation = new CancellationToken();
+		post(grid.start.x, grid.start.y, null);
+		boolean interrupted = false;
+		synchronized (this) {
+			this.busyOwners = this.owners.length;
+			this.solvesStarted++;
+			this.notifyAll();
+			while (this.busyOwners > 0) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					// Stop the owners, and wait for them all the same
+					interrupted = true;
+					cancel();
+				}
+			}
+		}
+		// Drop messages left over from a cancelled solve
+		for (Owner owner : this.owners)
+			owner.mailbox.set(null);
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return this.found ? path(grid) : null;
+	}
+
+	// Sizes the visited state for grid, all cells unvisited
+	private void prepare(Labyrinth.Grid grid) {
+		long slots = (long) ((grid.width + 63) & ~63) * grid.height;
+		if (slots > Labyrinth.MAX_INT_INDEXED_CELLS)
+			throw new IllegalStateException("Grid of " + grid.width + "x" + grid.height + " cells is too large");
+		this.stride = (grid.width + 63) & ~63;
+		this.tilesPerRow = (grid.width + this.tileWidth - 1) / this.tileWidth;
+		if (this.visited == null || this.visited.length != (int) (slots >>> 6)) {
+			this.visited = new long[(int) (slots >>> 6)];
+			this.cameFrom = new long[(int) (slots >>> 5)];
+		} else {
+			Arrays.fill(this.visited, 0L);
+		}
+	}
+
+	// Follows the directions recorded by the owners back from end to start
+	private Point[] path(Labyrinth.Grid grid) {
+		int length = 1;
+		for (int x = grid.end.x, y = grid.end.y; x != grid.start.x || y != grid.start.y; ++length) {
+			Direction back = cameFrom(y * this.stride + x);
+			x += back.dx;
+			y += back.dy;
+		}
+		Point[] path = new Point[length];
+		int x = grid.end.x;
+		int y = grid.end.y;
+		for (int i = length - 1; i > 0; --i) {
+			path[i] = new Point(x, y);
+			Direction back = cameFrom(y * this.stride + x);
+			x += back.dx;
+			y += back.dy;
+		}
+		path[0] = new Point(x, y);
+		return path;
+	}
+
+	// Only meaningful for visited cells other than start
+	private Direction cameFrom(int slot) {
+		return Direction.VALUES[(int) (this.cameFrom[slot >>> 5] >>> ((slot & 31) << 1)) & 3];
+	}
+
+	// Hands cell (x, y), reached from its neighbor in direction from (null for
+	// start), to the owner of its tile
+	private void post(int x, int y, Direction from) {
+		Owner owner = this.owners[((y / this.tileHeight) * this.tilesPerRow + x / this.tileWidth) % this.owners.length];
+		owner.post(new Message(x, y, from));
+	}
+
+	private void cancel() {
+		this.cancellation.cancel();
+		for (Owner owner : this.owners)
+			LockSupport.unpark(owner);
+	}
+
+	/*
+	 * Synchronization of the owners with solve(), like in
+	 * MultithreadBasedSolver.
+	 */
+
+	// Returns false if the solver has been closed instead of starting a solve
+	private synchronized boolean awaitSolve(int solvesDone) throws InterruptedException {
+		while (!this.closed && this.solvesStarted == solvesDone)
+			this.wait();
+		return !this.closed;
+	}
+
+	private synchronized void ownerDone() {
+		this.busyOwners--;
+		if (this.busyOwners == 0)
+			this.notifyAll();
+	}
+
+	// A cell handed to the owner of its tile; mailboxes link them into a stack
+	private static final class Message {
+		final int x;
+		final int y;
+		final Direction from;
+		Message next;
+
+		Message(int x, int y, Direction from) {
+			this.x = x;
+			this.y = y;
+			this.from = from;
+		}
+	}
+
+	private final class Owner extends Thread {
+
+		// Messages to this owner, most recent first
+		final AtomicReference<Message> mailbox = new AtomicReference<Message>();
+
+		// Cells to explore within the current tile, as pairs (x, y), kept
+		// across messages and solves
+		private final IntStack stack = new IntStack();
+
+		// Counted per batch of messages, then added to the labyrinth's statistics
+		private final SolverStats.Counts counts = new SolverStats.Counts();
+
+		Owner(int index) {
+			super("TileOwner #" + index);
+			// Like the threads of a ForkJoinPool, do not keep the program running if the solver is not closed
+			setDaemon(true);
+		}
+
+		// Lock-free, by any thread
+		void post(Message message) {
+			Message head;
+			do {
+				head = this.mailbox.get();
+				message.next = head;
+			} while (!this.mailbox.compareAndSet(head, message));
+			// Only an owner with an empty mailbox may be parked (or about to)
+			if (head == null)
+				LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			int solvesDone = 0;
+			try {
+				while (awaitSolve(solvesDone)) {
+					work(cancellation);
+					++solvesDone;
+					ownerDone();
+				}
+			} catch (InterruptedException e) {
+				// Stop now
+			}
+		}
+
+		// Processes messages until the solve is cancelled
+		private void work(CancellationToken cancellation) {
+			while (!cancellation.isCancelled()) {
+				Message message = this.mailbox.getAndSet(null);
+				if (message == null) {
+					long idleSince = System.nanoTime();
+					LockSupport.park(this);
+					this.counts.idleNanos += System.nanoTime() - idleSince;
+					continue;
+				}
+				for (; message != null && !cancellation.isCancelled(); message = message.next) {
+					explore(message, cancellation);
+					// Any messages posted by explore() are pending already
+					if (pending.decrementAndGet() == 0)
+						cancel();
+				}
+				lab.stats.add(this.counts);
+			}
+			lab.stats.add(this.counts);
+		}
+
+		/*
+		 * Visits the cell of message and all cells of its tile reachable from
+		 * it within the tile, posting the cells across the tile's borders.
+		 */
+		private void explore(Message message, CancellationToken cancellation) {
+			Labyrinth.Grid grid = lab.grid;
+			int stride = TileOwnershipSolver.this.stride;
+			if (!visit(message.y * stride + message.x, message.from)) {
+				this.counts.visitFailures++;
+				return;
+			}
+			// The tile of the cell, which this owner owns
+			int x0 = message.x - message.x % tileWidth;
+			int y0 = message.y - message.y % tileHeight;
+			int x1 = Math.min(x0 + tileWidth, grid.width);
+			int y1 = Math.min(y0 + tileHeight, grid.height);
+			IntStack stack = this.stack;
+			stack.push(message.x);
+			stack.push(message.y);
+			int stepsUntilCheck = 1;
+			while (!stack.isEmpty()) {
+				int y = stack.pop();
+				int x = stack.pop();
+				this.counts.cellsVisited++;
+				if (x == grid.end.x && y == grid.end.y) {
+					found = true;
+					cancel();
+					stack.clear();
+					return;
+				}
+				if (--stepsUntilCheck == 0) {
+					if (cancellation.isCancelled()) {
+						stack.clear();
+						return;
+					}
+					stepsUntilCheck = CancellationToken.CHECK_INTERVAL;
+				}
+				int cell = grid.index(x, y);
+				for (Direction directionToNeighbor : Direction.VALUES) {
+					if (!grid.hasPassage(cell, directionToNeighbor))
+						continue;
+					int nx = x + directionToNeighbor.dx;
+					int ny = y + directionToNeighbor.dy;
+					if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1) {
+						// Across the border, unless back where this cell was reached from
+						if ((x != grid.start.x || y != grid.start.y)
+								&& cameFrom(y * stride + x) == directionToNeighbor)
+							continue;
+						pending.incrementAndGet();
+						TileOwnershipSolver.this.post(nx, ny, directionToNeighbor.opposite);
+						this.counts.forks++;
+					} else if (visit(ny * stride + nx, directionToNeighbor.opposite)) {
+						stack.push(nx);
+						stack.push(ny);
+					}
+				}
+			}
+		}
+
+		// Plain accesses, as only this owner visits the cells of its tiles
+		private boolean visit(int slot, Direction from) {
+			long[] visited = TileOwnershipSolver.this.visited;
+			long bit = 1L << slot;
+			if ((visited[slot >>> 6] & bit) != 0)
+				return false;
+			visited[slot >>> 6] |= bit;
+			if (from != null) {
+				long[] cameFrom = TileOwnershipSolver.this.cameFrom;
+				int shift = (slot & 31) << 1;
+				cameFrom[slot >>> 5] = (cameFrom[slot >>> 5] & ~(3L << shift)) | ((long) from.ordinal() << shift);
+			}
+			return true;
+		}
+	}
+}
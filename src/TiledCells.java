@@ -0,0 +1,51 @@
+/*
+ * A tiled layout of the per-cell search state of a grid (visited bits and
+ * came-from directions, see Labyrinth), against false sharing: By cell index,
+ * the 64 cells of a word of a ConcurrentBitSet lie in one row, and a cache
+ * line of it covers 512 cells of that row, so threads searching regions next
+ * to each other keep writing to the same cache lines. Here, each word holds an
+ * 8x8 tile of cells, and the tiles follow each other row by row, so a cache
+ * line covers 64x8 cells, and a 4 KB page 512x64 (at most).
+ *
+ * The grid's passages stay in row order, as they are only read while solving,
+ * and reading cache lines shared with other threads is cheap. Converting an
+ * index takes a division by the width, so this only pays off with many
+ * threads writing to neighboring regions at the same time.
+ */
+public final class TiledCells {
+
+	private static final int TILE_BITS = 3; // 8x8 cells per tile
+	private static final int TILE_MASK = (1 << TILE_BITS) - 1;
+
+	private final int width;
+	private final int tilesPerRow;
+	private final int size;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If the grid, rounded up to whole tiles, has more than
+	 *             Labyrinth.MAX_INT_INDEXED_CELLS cells
+	 */
+	public TiledCells(int width, int height) {
+		this.width = width;
+		this.tilesPerRow = (width + TILE_MASK) >>> TILE_BITS;
+		long tileRows = ((long) height + TILE_MASK) >>> TILE_BITS;
+		long size = (tilesPerRow * tileRows) << (2 * TILE_BITS);
+		if (size > Labyrinth.MAX_INT_INDEXED_CELLS)
+			throw new IllegalArgumentException("Grid of " + width + "x" + height + " cells is too large to be tiled");
+		this.size = (int) size;
+	}
+
+	// Number of positions, i.e. of cells of the grid rounded up to whole tiles
+	public int size() {
+		return size;
+	}
+
+	// The position of the cell with the given (row order) index
+	public int position(int cell) {
+		int y = cell / width;
+		int x = cell - y * width;
+		int tile = (y >>> TILE_BITS) * tilesPerRow + (x >>> TILE_BITS);
+		return (tile << (2 * TILE_BITS)) | ((y & TILE_MASK) << TILE_BITS) | (x & TILE_MASK);
+	}
+}
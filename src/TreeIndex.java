@@ -0,0 +1,259 @@
+/*
+ * An index for path queries without any search: A spanning tree of the grid,
+ * given by the direction to its parent and its depth for each cell. The path
+ * between two cells then climbs from the deeper of them up to the depth of the
+ * other, and from both of them in lockstep up to their lowest common ancestor,
+ * so a query takes time proportional to the length of the path it returns and
+ * needs no visited state, which also makes concurrent queries trivially safe.
+ *
+ * Without cycles (cycle creation probability 0) the grid is a tree, so this
+ * is its only path. Otherwise the tree is one spanning tree of the grid (a
+ * breadth-first tree), and queries still only follow the tree: The path
+ * returned is a correct path, but not necessarily the shortest (which
+ * ParallelBFSSolver finds), and the distance is that of this path. Queries
+ * ignore the passages not in the tree, of which nonTreeEdges() only tells how
+ * many there are: Trying detours through them would take time proportional
+ * to their number for each query, which is about 20000 for a 1000x1000 grid
+ * with a cycle creation probability of 0.01.
+ * build() runs a level-synchronous breadth-first search like
+ * ParallelBFSSolver, from cell 0 and then from every cell not reached yet (so
+ * every connected part of the grid gets its own tree). Two-way passages, as
+ * made by Grid.addPassage(), are assumed.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class TreeIndex {
+
+	// Frontiers smaller than this per thread are expanded on the calling thread
+	private static final int MIN_CELLS_PER_THREAD = 512;
+
+	// Each passage is looked at from one of its cells only, in these directions
+	private static final Direction[] EAST_AND_SOUTH = { Direction.E, Direction.S };
+
+	public final Labyrinth.Grid grid;
+
+	private final CellDirections parents; // not set for the roots
+	private final int[] depths; // 0 for the roots
+
+	private int nonTreeEdges; // passages not in the tree
+
+	private TreeIndex(Labyrinth.Grid grid) {
+		this.grid = grid;
+		int cells = (int) grid.cells();
+		this.parents = new CellDirections(cells);
+		this.depths = new int[cells];
+	}
+
+	/**
+	 * Builds the index of grid on the given number of threads. grid must not
+	 * have more than Labyrinth.MAX_INT_INDEXED_CELLS cells, and must not
+	 * change afterwards.
+	 */
+	public static TreeIndex build(Labyrinth.Grid grid, int threads) {
+		if (!grid.isIntIndexed())
+			throw new IllegalArgumentException("Grid with " + grid.cells() + " cells is too large for a TreeIndex");
+		TreeIndex index = new TreeIndex(grid);
+		new Builder(index, threads).build();
+		index.countNonTreeEdges();
+		return index;
+	}
+
+	// Whether path() and distance() give the only path, and so the shortest
+	public boolean isTree() {
+		return nonTreeEdges == 0;
+	}
+
+	// The number of passages not in the tree, i.e. of cycles the tree ignores
+	public int nonTreeEdges() {
+		return nonTreeEdges;
+	}
+
+	/**
+	 * @return The path from from to to (both inclusive) along the tree, or
+	 *         null if the two cells are not connected. Unless isTree(), a
+	 *         shorter one may exist through passages not in the tree.
+	 */
+	public Point[] path(Point from, Point to) {
+		int a = grid.index(from);
+		int b = grid.index(to);
+		IntStack up = new IntStack(); // from from up to just below the ancestor
+		IntStack down = new IntStack(); // from to up to just below the ancestor
+		while (depths[a] > depths[b]) {
+			up.push(a);
+			a = parent(a);
+		}
+		while (depths[b] > depths[a]) {
+			down.push(b);
+			b = parent(b);
+		}
+		while (a != b) {
+			if (depths[a] == 0)
+				return null; // different roots: not connected
+			up.push(a);
+			down.push(b);
+			a = parent(a);
+			b = parent(b);
+		}
+		Point[] path = new Point[up.size() + 1 + down.size()];
+		int i = 0;
+		for (int j = 0; j < up.size(); ++j)
+			path[i++] = grid.point(up.get(j));
+		path[i++] = grid.point(a);
+		while (!down.isEmpty())
+			path[i++] = grid.point(down.pop());
+		return path;
+	}
+
+	/**
+	 * @return The number of steps between the two cells along the tree, or
+	 *         -1 if they are not connected. Unless isTree(), this is only an
+	 *         upper bound of their distance.
+	 */
+	public int distance(Point from, Point to) {
+		int a = grid.index(from);
+		int b = grid.index(to);
+		int steps = 0;
+		for (; depths[a] > depths[b]; ++steps)
+			a = parent(a);
+		for (; depths[b] > depths[a]; ++steps)
+			b = parent(b);
+		for (; a != b; steps += 2) {
+			if (depths[a] == 0)
+				return -1;
+			a = parent(a);
+			b = parent(b);
+		}
+		return steps;
+	}
+
+	private int parent(int cell) {
+		return grid.neighbor(cell, parents.get(cell));
+	}
+
+	private void countNonTreeEdges() {
+		int cells = (int) grid.cells();
+		for (int cell = 0; cell < cells; ++cell) {
+			for (Direction dir : EAST_AND_SOUTH) {
+				if (!grid.hasPassage(cell, dir))
+					continue;
+				int neighbor = grid.neighbor(cell, dir);
+				boolean treeEdge = (depths[neighbor] == depths[cell] + 1 && parent(neighbor) == cell)
+						|| (depths[cell] == depths[neighbor] + 1 && parent(cell) == neighbor);
+				if (!treeEdge)
+					++nonTreeEdges;
+			}
+		}
+	}
+
+	/*
+	 * The level-synchronous breadth-first searches of build(), one slice of
+	 * the frontier per thread.
+	 */
+	private static final class Builder {
+
+		private final TreeIndex index;
+		private final int threads;
+		private final ConcurrentBitSet visited;
+		private int[] frontier = new int[16];
+		private int frontierSize;
+		private int level;
+
+		Builder(TreeIndex index, int threads) {
+			this.index = index;
+			this.threads = threads;
+			this.visited = new ConcurrentBitSet(index.depths.length);
+		}
+
+		void build() {
+			List<FrontierSlice> slices = new ArrayList<FrontierSlice>(threads);
+			for (int i = 0; i < threads; ++i)
+				slices.add(new FrontierSlice());
+			ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+			try {
+				for (int root = 0; root < index.depths.length; ++root) {
+					if (visited.get(root))
+						continue;
+					visited.set(root);
+					frontier[0] = root;
+					frontierSize = 1;
+					level = 0;
+					while (frontierSize > 0) {
+						int sliceCount = Math.max(1, Math.min(threads, frontierSize / MIN_CELLS_PER_THREAD));
+						if (sliceCount == 1) {
+							slices.get(0).expand(0, frontierSize);
+						} else {
+							for (int i = 0; i < sliceCount; ++i) {
+								slices.get(i).from = (int) ((long) frontierSize * i / sliceCount);
+								slices.get(i).to = (int) ((long) frontierSize * (i + 1) / sliceCount);
+							}
+							for (Future<Void> slice : pool.invokeAll(slices.subList(0, sliceCount)))
+								slice.get();
+						}
+						nextFrontier(slices);
+						++level;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while building the index", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Building the index failed", e.getCause());
+			} finally {
+				if (pool != null)
+					pool.shutdown();
+			}
+		}
+
+		// Concatenates the buffers of all slices into the frontier
+		private void nextFrontier(List<FrontierSlice> slices) {
+			int size = 0;
+			for (FrontierSlice slice : slices)
+				size += slice.next.size();
+			if (size > frontier.length)
+				frontier = new int[Math.max(size, frontier.length * 2)];
+			int offset = 0;
+			for (FrontierSlice slice : slices) {
+				slice.next.copyTo(frontier, offset);
+				offset += slice.next.size();
+				slice.next.clear();
+			}
+			frontierSize = size;
+		}
+
+		private final class FrontierSlice implements Callable<Void> {
+
+			private final IntStack next = new IntStack();
+			private int from;
+			private int to;
+
+			@Override
+			public Void call() {
+				expand(from, to);
+				return null;
+			}
+
+			void expand(int from, int to) {
+				Labyrinth.Grid grid = index.grid;
+				for (int i = from; i < to; ++i) {
+					int current = frontier[i];
+					for (Direction directionToNeighbor : Direction.VALUES) {
+						if (!grid.hasPassage(current, directionToNeighbor))
+							continue;
+						int neighbor = grid.neighbor(current, directionToNeighbor);
+						if (visited.trySet(neighbor)) {
+							index.parents.set(neighbor, directionToNeighbor.opposite);
+							index.depths[neighbor] = level + 1;
+							next.push(neighbor);
+						}
+					}
+				}
+			}
+		}
+	}
+}